@@ -0,0 +1,58 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+import com.dieselpoint.norm.sqlmakers.SqliteMaker;
+
+/**
+ * Opens the in-memory databases the benchmarks run against.
+ */
+class Databases {
+
+	static final String H2 = "h2";
+	static final String SQLITE = "sqlite";
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	/**
+	 * Returns a new, empty in-memory database of the given kind.
+	 */
+	static Database open(String kind) {
+		Database db = new Database();
+		switch (kind) {
+		case H2:
+			db.setJdbcUrl("jdbc:h2:mem:normbench" + counter.incrementAndGet()
+					+ ";DB_CLOSE_DELAY=-1;database_to_upper=false");
+			db.setSqlMaker(new H2Maker());
+			break;
+		case SQLITE:
+			// each connection to :memory: is a separate database, so keep just one
+			db.setJdbcUrl("jdbc:sqlite::memory:");
+			db.setSqlMaker(new SqliteMaker());
+			db.setMaxPoolSize(1);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown database " + kind);
+		}
+		return db;
+	}
+
+	static void createTable(Database db, Class<?> clazz, String table) {
+		db.sql("drop table if exists " + table).execute();
+		db.createTable(clazz);
+	}
+
+	static <T> List<T> makeRows(long firstId, int count, LongFunction<T> factory) {
+		List<T> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			rows.add(factory.apply(firstId + i));
+		}
+		return rows;
+	}
+
+}
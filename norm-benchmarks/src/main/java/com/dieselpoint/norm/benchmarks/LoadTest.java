@@ -0,0 +1,259 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.LatencyHistogram;
+import com.dieselpoint.norm.QueryEvent;
+import com.dieselpoint.norm.QueryListener;
+
+/**
+ * Runs a mix of reads, writes and transactions from many threads against an
+ * in-memory H2 database, for every combination of pool size and thread
+ * count given, and prints throughput, p50/p99/p999 latency per operation,
+ * and how long the threads waited for a connection from the pool.
+ * <p>
+ * Arguments are name=value, all optional:
+ * <pre>
+ * pool=4,16                 maximum pool sizes to try
+ * threads=1,4,16,64         thread counts to try
+ * rows=10000                rows loaded before each run
+ * warmup=5                  seconds run before recording
+ * duration=20               seconds recorded
+ * mix=first:50,results:15,insert:10,update:10,upsert:10,transaction:5
+ * </pre>
+ * Each run gets a new database, so runs don't see each other's rows.
+ */
+public class LoadTest {
+
+	private final int rows;
+	private final int warmupSeconds;
+	private final int durationSeconds;
+	private final Operation[] picks;
+
+	public LoadTest(int rows, int warmupSeconds, int durationSeconds, Map<Operation, Integer> mix) {
+		this.rows = rows;
+		this.warmupSeconds = warmupSeconds;
+		this.durationSeconds = durationSeconds;
+
+		// one entry per unit of weight, so a random index picks by weight
+		List<Operation> picks = new ArrayList<>();
+		for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+			for (int i = 0; i < entry.getValue(); i++) {
+				picks.add(entry.getKey());
+			}
+		}
+		if (picks.isEmpty()) {
+			throw new IllegalArgumentException("The mix is empty");
+		}
+		this.picks = picks.toArray(new Operation[0]);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> options = new HashMap<>();
+		options.put("pool", "4,16");
+		options.put("threads", "1,4,16,64");
+		options.put("rows", "10000");
+		options.put("warmup", "5");
+		options.put("duration", "20");
+		options.put("mix", "first:50,results:15,insert:10,update:10,upsert:10,transaction:5");
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq < 0 || !options.containsKey(arg.substring(0, eq))) {
+				throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of " + options.keySet());
+			}
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+
+		Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+		for (String part : options.get("mix").split(",")) {
+			String[] nameWeight = part.split(":");
+			mix.put(Operation.valueOf(nameWeight[0].trim().toUpperCase(Locale.ROOT)),
+					Integer.parseInt(nameWeight[1].trim()));
+		}
+
+		LoadTest test = new LoadTest(Integer.parseInt(options.get("rows")), Integer.parseInt(options.get("warmup")),
+				Integer.parseInt(options.get("duration")), mix);
+
+		List<Result> results = new ArrayList<>();
+		for (int poolSize : parseInts(options.get("pool"))) {
+			for (int threads : parseInts(options.get("threads"))) {
+				Result result = test.run(poolSize, threads);
+				result.print();
+				results.add(result);
+			}
+		}
+
+		System.out.println();
+		System.out.println(String.format("%6s %8s %12s %10s %10s %14s %14s", "pool", "threads", "ops/s", "p99 ms",
+				"p999 ms", "wait p99 ms", "wait p999 ms"));
+		for (Result result : results) {
+			System.out.println(String.format("%6d %8d %12.0f %10s %10s %14s %14s", result.poolSize, result.threads,
+					result.getThroughput(), millis(result.all.getPercentileNanos(0.99)),
+					millis(result.all.getPercentileNanos(0.999)), millis(result.poolWait.getPercentileNanos(0.99)),
+					millis(result.poolWait.getPercentileNanos(0.999))));
+		}
+	}
+
+	/**
+	 * Load a new database, run the mix from the given number of threads, and
+	 * return what was recorded after the warmup.
+	 */
+	public Result run(int poolSize, int threads) throws InterruptedException {
+		Database db = Databases.open(Databases.H2);
+		db.setMaxPoolSize(poolSize);
+		try {
+			Databases.createTable(db, Rows.Narrow.class, "bench_narrow");
+			for (int first = 1; first <= rows; first += 1000) {
+				db.insertAll(Databases.makeRows(first, Math.min(1000, rows - first + 1), Rows::narrow));
+			}
+
+			Operation.Workload work = new Operation.Workload(rows);
+			Result result = new Result(poolSize, threads);
+			db.addQueryListener(new QueryListener() {
+				@Override
+				public void connectionAcquired(QueryEvent event, long waitNanos) {
+					if (work.isRecording()) {
+						result.poolWait.record(waitNanos);
+					}
+				}
+			});
+
+			Worker[] workers = new Worker[threads];
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new Worker(db, work, result);
+				workers[i].setName("norm-load-" + i);
+				workers[i].start();
+			}
+
+			Thread.sleep(warmupSeconds * 1000L);
+			work.setRecording(true);
+			long start = System.nanoTime();
+			Thread.sleep(durationSeconds * 1000L);
+			work.setRecording(false);
+			result.elapsedNanos = System.nanoTime() - start;
+
+			for (Worker worker : workers) {
+				worker.stopped = true;
+			}
+			for (Worker worker : workers) {
+				worker.join();
+			}
+			db.sql("drop table bench_narrow").execute();
+			return result;
+
+		} finally {
+			db.close();
+		}
+	}
+
+	private class Worker extends Thread {
+
+		private final Database db;
+		private final Operation.Workload work;
+		private final Result result;
+		private volatile boolean stopped;
+
+		Worker(Database db, Operation.Workload work, Result result) {
+			this.db = db;
+			this.work = work;
+			this.result = result;
+		}
+
+		@Override
+		public void run() {
+			while (!stopped) {
+				Operation op = picks[ThreadLocalRandom.current().nextInt(picks.length)];
+				long start = System.nanoTime();
+				boolean failed = false;
+				try {
+					op.run(db, work, result.poolWait);
+				} catch (RuntimeException e) {
+					failed = true;
+				}
+				long nanos = System.nanoTime() - start;
+				if (work.isRecording()) {
+					if (failed) {
+						result.errors.get(op).increment();
+					} else {
+						result.latencies.get(op).record(nanos);
+						result.all.record(nanos);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * What one run recorded. Failed calls are counted but not timed.
+	 */
+	public static class Result {
+
+		final int poolSize;
+		final int threads;
+		final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+		final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+		final LatencyHistogram all = new LatencyHistogram();
+		final LatencyHistogram poolWait = new LatencyHistogram();
+		long elapsedNanos;
+
+		Result(int poolSize, int threads) {
+			this.poolSize = poolSize;
+			this.threads = threads;
+			for (Operation op : Operation.values()) {
+				latencies.put(op, new LatencyHistogram());
+				errors.put(op, new LongAdder());
+			}
+		}
+
+		/**
+		 * Successful operations per second.
+		 */
+		public double getThroughput() {
+			return elapsedNanos == 0 ? 0 : all.getCount() * 1e9 / elapsedNanos;
+		}
+
+		void print() {
+			System.out.println();
+			System.out.println(String.format("pool=%d threads=%d: %.0f ops/s", poolSize, threads, getThroughput()));
+			System.out.println(String.format("  %-12s %10s %10s %10s %10s %10s %10s %8s", "operation", "count",
+					"ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors"));
+			for (Operation op : Operation.values()) {
+				LatencyHistogram histogram = latencies.get(op);
+				long errorCount = errors.get(op).sum();
+				if (histogram.getCount() > 0 || errorCount > 0) {
+					printLine(op.name().toLowerCase(Locale.ROOT), histogram, errorCount);
+				}
+			}
+			printLine("pool wait", poolWait, 0);
+		}
+
+		private void printLine(String name, LatencyHistogram histogram, long errorCount) {
+			System.out.println(String.format("  %-12s %10d %10.0f %10s %10s %10s %10s %8d", name, histogram.getCount(),
+					elapsedNanos == 0 ? 0 : histogram.getCount() * 1e9 / elapsedNanos,
+					millis(histogram.getPercentileNanos(0.5)), millis(histogram.getPercentileNanos(0.99)),
+					millis(histogram.getPercentileNanos(0.999)), millis(histogram.getMaxNanos()), errorCount));
+		}
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.3f", nanos / 1e6);
+	}
+
+	private static int[] parseInts(String list) {
+		String[] parts = list.split(",");
+		int[] out = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			out[i] = Integer.parseInt(parts[i].trim());
+		}
+		return out;
+	}
+
+}
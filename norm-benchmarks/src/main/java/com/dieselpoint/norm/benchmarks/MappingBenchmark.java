@@ -0,0 +1,80 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dieselpoint.norm.Database;
+
+/**
+ * Reading rows into narrow and wide pojos, into Maps, and into a class whose
+ * columns all go through enums or converters. Each call reads the whole
+ * table, so the score is in queries; multiply by rows for rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+	@Param({ Databases.H2, Databases.SQLITE })
+	public String database;
+
+	@Param({ "100" })
+	public int rows;
+
+	private Database db;
+
+	@Setup
+	public void setUp() {
+		db = Databases.open(database);
+		Databases.createTable(db, Rows.Narrow.class, "bench_narrow");
+		Databases.createTable(db, Rows.Wide.class, "bench_wide");
+		Databases.createTable(db, Rows.Converted.class, "bench_converted");
+		db.insertAll(Databases.makeRows(1, rows, Rows::narrow));
+		db.insertAll(Databases.makeRows(1, rows, Rows::wide));
+		db.insertAll(Databases.makeRows(1, rows, Rows::converted));
+	}
+
+	@TearDown
+	public void tearDown() {
+		db.close();
+	}
+
+	@Benchmark
+	public List<Rows.Narrow> narrow() {
+		return db.results(Rows.Narrow.class);
+	}
+
+	@Benchmark
+	public List<Rows.Wide> wide() {
+		return db.results(Rows.Wide.class);
+	}
+
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public List<HashMap> wideAsMap() {
+		return db.sql("select * from bench_wide").results(HashMap.class);
+	}
+
+	@Benchmark
+	public List<Rows.Converted> converted() {
+		return db.results(Rows.Converted.class);
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.LatencyHistogram;
+import com.dieselpoint.norm.Transaction;
+
+/**
+ * The calls the load test makes, against bench_narrow. Reads and updates
+ * pick a random row from the ones loaded at the start; inserts take new ids
+ * above them, so they never collide.
+ */
+enum Operation {
+
+	FIRST {
+		@Override
+		void run(Database db, Workload work, LatencyHistogram poolWait) {
+			db.where("id = ?", work.randomId()).first(Rows.Narrow.class);
+		}
+	},
+
+	RESULTS {
+		@Override
+		void run(Database db, Workload work, LatencyHistogram poolWait) {
+			long id = work.randomId();
+			db.where("id >= ? and id < ?", id, id + RANGE).orderBy("id").results(Rows.Narrow.class);
+		}
+	},
+
+	INSERT {
+		@Override
+		void run(Database db, Workload work, LatencyHistogram poolWait) {
+			db.insert(Rows.narrow(work.nextId())).getRowsAffected();
+		}
+	},
+
+	UPDATE {
+		@Override
+		void run(Database db, Workload work, LatencyHistogram poolWait) {
+			Rows.Narrow row = Rows.narrow(work.randomId());
+			row.count = ThreadLocalRandom.current().nextInt();
+			db.update(row);
+		}
+	},
+
+	UPSERT {
+		@Override
+		void run(Database db, Workload work, LatencyHistogram poolWait) {
+			// half new rows, half existing
+			long id = ThreadLocalRandom.current().nextBoolean() ? work.randomId() : work.nextId();
+			db.upsert(Rows.narrow(id)).getRowsAffected();
+		}
+	},
+
+	/**
+	 * Read a row, update it and insert another in one transaction. The
+	 * connection is taken by startTransaction(), which the query listener
+	 * doesn't see, so its wait is timed here.
+	 */
+	TRANSACTION {
+		@Override
+		void run(Database db, Workload work, LatencyHistogram poolWait) {
+			long start = System.nanoTime();
+			Transaction trans = db.startTransaction();
+			if (work.isRecording()) {
+				poolWait.record(System.nanoTime() - start);
+			}
+			boolean committed = false;
+			try {
+				Rows.Narrow row = db.transaction(trans).where("id = ?", work.randomId()).first(Rows.Narrow.class);
+				if (row != null) {
+					row.count++;
+					db.transaction(trans).update(row);
+				}
+				db.transaction(trans).insert(Rows.narrow(work.nextId()));
+				trans.commit();
+				committed = true;
+			} finally {
+				if (!committed) {
+					try {
+						trans.rollback();
+					} catch (DbException e) {
+						// the original exception is more useful
+					}
+				}
+			}
+		}
+	};
+
+	static final int RANGE = 20;
+
+	abstract void run(Database db, Workload work, LatencyHistogram poolWait);
+
+	/**
+	 * Ids and the recording flag shared by the threads of one run.
+	 */
+	static class Workload {
+
+		private final long rows;
+		private final AtomicLong nextId;
+		private volatile boolean recording;
+
+		Workload(long rows) {
+			this.rows = rows;
+			this.nextId = new AtomicLong(rows + 1);
+		}
+
+		long randomId() {
+			return 1 + ThreadLocalRandom.current().nextLong(rows);
+		}
+
+		long nextId() {
+			return nextId.getAndIncrement();
+		}
+
+		boolean isRecording() {
+			return recording;
+		}
+
+		void setRecording(boolean recording) {
+			this.recording = recording;
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Convert;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The row classes the benchmarks read and write.
+ */
+public class Rows {
+
+	public enum Status {
+		NEW, ACTIVE, SUSPENDED, CLOSED
+	}
+
+	public enum Region {
+		NORTH, SOUTH, EAST, WEST
+	}
+
+	@Table(name = "bench_narrow")
+	public static class Narrow {
+		@Id
+		public long id;
+		public String name;
+		public int count;
+	}
+
+	@Table(name = "bench_wide")
+	public static class Wide {
+		@Id
+		public long id;
+		public String name;
+		public String email;
+		public String street;
+		public String city;
+		public String country;
+		public int count1;
+		public int count2;
+		public int count3;
+		public long total1;
+		public long total2;
+		public double score1;
+		public double score2;
+		public boolean flag1;
+		public boolean flag2;
+		public Integer boxed1;
+		public Long boxed2;
+		public BigDecimal amount;
+		public Date created;
+		public Date updated;
+	}
+
+	/**
+	 * Every column but the key goes through an enum or a converter.
+	 */
+	@Table(name = "bench_converted")
+	public static class Converted {
+		@Id
+		public long id;
+		public Status status;
+		@Enumerated(EnumType.ORDINAL)
+		public Region region;
+		@Convert(converter = TagsConverter.class)
+		public List<String> tags;
+		@Convert(converter = UpperCaseConverter.class)
+		public String code;
+	}
+
+	public static class TagsConverter implements AttributeConverter<List<String>, String> {
+		@Override
+		public String convertToDatabaseColumn(List<String> tags) {
+			return tags == null ? null : String.join(",", tags);
+		}
+
+		@Override
+		public List<String> convertToEntityAttribute(String value) {
+			return value == null ? null : new ArrayList<>(Arrays.asList(value.split(",")));
+		}
+	}
+
+	public static class UpperCaseConverter implements AttributeConverter<String, String> {
+		@Override
+		public String convertToDatabaseColumn(String value) {
+			return value == null ? null : value.toUpperCase();
+		}
+
+		@Override
+		public String convertToEntityAttribute(String value) {
+			return value == null ? null : value.toLowerCase();
+		}
+	}
+
+	public static Narrow narrow(long id) {
+		Narrow row = new Narrow();
+		row.id = id;
+		row.name = "name" + id;
+		row.count = (int) id;
+		return row;
+	}
+
+	public static Wide wide(long id) {
+		Wide row = new Wide();
+		row.id = id;
+		row.name = "name" + id;
+		row.email = "user" + id + "@example.com";
+		row.street = id + " Main St";
+		row.city = "Springfield";
+		row.country = "US";
+		row.count1 = (int) id;
+		row.count2 = (int) id * 2;
+		row.count3 = (int) id * 3;
+		row.total1 = id * 1000;
+		row.total2 = id * 2000;
+		row.score1 = id / 3.0;
+		row.score2 = id / 7.0;
+		row.flag1 = id % 2 == 0;
+		row.flag2 = id % 3 == 0;
+		row.boxed1 = (int) id;
+		row.boxed2 = id;
+		row.amount = BigDecimal.valueOf(id, 2);
+		row.created = new Date(1_500_000_000_000L + id);
+		row.updated = new Date(1_600_000_000_000L + id);
+		return row;
+	}
+
+	public static Converted converted(long id) {
+		Converted row = new Converted();
+		row.id = id;
+		row.status = Status.values()[(int) (id % Status.values().length)];
+		row.region = Region.values()[(int) (id % Region.values().length)];
+		row.tags = Arrays.asList("a" + id, "b" + id, "c");
+		row.code = "code" + id;
+		return row;
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+/**
+ * The parts of norm that don't touch the database: building pojo infos,
+ * pulling insert args out of rows, and generating select sql.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlBenchmark {
+
+	private StandardSqlMaker sqlMaker;
+	private Database db;
+	private Rows.Narrow narrow;
+	private Rows.Wide wide;
+	private Rows.Converted converted;
+
+	@Setup
+	public void setUp() {
+		sqlMaker = new StandardSqlMaker();
+		db = new Database();
+		db.setSqlMaker(sqlMaker);
+		narrow = Rows.narrow(42);
+		wide = Rows.wide(42);
+		converted = Rows.converted(42);
+
+		// warm the pojo info cache
+		sqlMaker.getPojoInfo(Rows.Narrow.class);
+		sqlMaker.getPojoInfo(Rows.Wide.class);
+		sqlMaker.getPojoInfo(Rows.Converted.class);
+	}
+
+	/**
+	 * What getPojoInfo() does the first time it sees a class. The cache can't
+	 * be cleared, so this does the same steps directly, less the select
+	 * columns, which are private to the sql maker.
+	 */
+	@Benchmark
+	public StandardPojoInfo pojoInfoCold() {
+		StandardPojoInfo pojoInfo = new StandardPojoInfo(Rows.Wide.class);
+		sqlMaker.makeInsertSql(pojoInfo);
+		sqlMaker.makeUpsertSql(pojoInfo);
+		sqlMaker.makeUpdateSql(pojoInfo);
+		pojoInfo.insertProperties = pojoInfo.getProperties(pojoInfo.insertColumnNames);
+		pojoInfo.updateProperties = pojoInfo.getProperties(pojoInfo.updateColumnNames);
+		if (pojoInfo.upsertColumnNames != null) {
+			pojoInfo.upsertProperties = pojoInfo.getProperties(pojoInfo.upsertColumnNames);
+		}
+		return pojoInfo;
+	}
+
+	@Benchmark
+	public StandardPojoInfo pojoInfoWarm() {
+		return sqlMaker.getPojoInfo(Rows.Wide.class);
+	}
+
+	@Benchmark
+	public Object[] insertArgsNarrow() {
+		return sqlMaker.getInsertArgs(null, narrow);
+	}
+
+	@Benchmark
+	public Object[] insertArgsWide() {
+		return sqlMaker.getInsertArgs(null, wide);
+	}
+
+	@Benchmark
+	public Object[] insertArgsConverted() {
+		return sqlMaker.getInsertArgs(null, converted);
+	}
+
+	@Benchmark
+	public String selectSql() {
+		Query query = db.where("name = ? and count > ?", "bob", 3).orderBy("id").limit(10);
+		return sqlMaker.getSelectSql(query, Rows.Wide.class);
+	}
+
+}
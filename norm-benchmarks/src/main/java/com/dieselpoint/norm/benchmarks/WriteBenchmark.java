@@ -0,0 +1,89 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dieselpoint.norm.Database;
+
+/**
+ * Inserting rows one at a time against inserting them with insertAll(). Both
+ * write batchSize rows per call, so the scores compare directly. The table
+ * is emptied before each iteration so it doesn't grow without bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+	@Param({ Databases.H2, Databases.SQLITE })
+	public String database;
+
+	@Param({ "100" })
+	public int batchSize;
+
+	private Database db;
+	private long nextId;
+
+	@Setup
+	public void setUp() {
+		db = Databases.open(database);
+	}
+
+	@Setup(Level.Iteration)
+	public void emptyTables() {
+		Databases.createTable(db, Rows.Narrow.class, "bench_narrow");
+		Databases.createTable(db, Rows.Converted.class, "bench_converted");
+		nextId = 0;
+	}
+
+	@TearDown
+	public void tearDown() {
+		db.close();
+	}
+
+	@Benchmark
+	public int insertOneAtATime() {
+		List<Rows.Narrow> rows = nextRows();
+		int count = 0;
+		for (Rows.Narrow row : rows) {
+			count += db.insert(row).getRowsAffected();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int insertAll() {
+		return db.insertAll(nextRows()).getRowsAffected();
+	}
+
+	@Benchmark
+	public int insertAllConverted() {
+		List<Rows.Converted> rows = Databases.makeRows(nextId, batchSize, Rows::converted);
+		nextId += batchSize;
+		return db.insertAll(rows).getRowsAffected();
+	}
+
+	private List<Rows.Narrow> nextRows() {
+		List<Rows.Narrow> rows = Databases.makeRows(nextId, batchSize, Rows::narrow);
+		nextId += batchSize;
+		return rows;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Table;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The generated property accessors against plain reflection, on pulling
+ * insert args out of a row and on putting values into a pojo the way the row
+ * mapper does. It's in norm's own package so it can switch a pojo info over
+ * to reflection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessorBenchmark {
+
+	@Param({ "generated", "reflection" })
+	public String accessors;
+
+	private StandardPojoInfo pojoInfo;
+	private Property[] props;
+	private Object[] values;
+	private Row row;
+
+	@Setup
+	public void setUp() {
+		StandardSqlMaker sqlMaker = new StandardSqlMaker();
+		if (accessors.equals("generated")) {
+			pojoInfo = sqlMaker.getPojoInfo(Row.class);
+		} else {
+			// a private pojo info, so the maker's cached one keeps its accessors
+			pojoInfo = new StandardPojoInfo(Row.class);
+			sqlMaker.makeInsertSql(pojoInfo);
+			for (Property prop : pojoInfo.propertyMap.values()) {
+				PropertyAccessors.applyReflection(prop);
+			}
+		}
+		props = pojoInfo.propertyMap.values().toArray(new Property[0]);
+		values = new Object[] { 42L, 7, 3.5, "bob", true };
+
+		row = new Row();
+		row.id = 42;
+		row.count = 7;
+		row.amount = 3.5;
+		row.name = "bob";
+		row.flag = true;
+	}
+
+	/**
+	 * The same as StandardSqlMaker.getInsertArgs(), but against this pojo info.
+	 */
+	@Benchmark
+	public Object[] insertArgs() {
+		Object[] args = new Object[pojoInfo.insertSqlArgCount];
+		for (int i = 0; i < pojoInfo.insertSqlArgCount; i++) {
+			args[i] = pojoInfo.getValue(row, pojoInfo.insertColumnNames[i]);
+		}
+		return args;
+	}
+
+	@Benchmark
+	public Row putValues() {
+		Row out = new Row();
+		for (int i = 0; i < props.length; i++) {
+			pojoInfo.putValue(out, props[i], values[i]);
+		}
+		return out;
+	}
+
+	@Table(name = "benchrow")
+	public static class Row {
+		public long id;
+		public int count;
+		public double amount;
+		public String name;
+		public boolean flag;
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.dieselpoint.norm;
+
+/**
+ * A snapshot of a cache's counters.
+ */
+public class CacheStats {
+
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+
+	public CacheStats(long hits, long misses, long evictions, int size) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of entries dropped because the cache was full or they
+	 * had expired. Entries dropped because the row was written are not counted.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of entries in the cache now.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	CacheStats plus(CacheStats other) {
+		return new CacheStats(hits + other.hits, misses + other.misses, evictions + other.evictions,
+				size + other.size);
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " size=" + size;
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.dieselpoint.norm;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.dieselpoint.norm.sqlmakers.RowMapper;
+
+/**
+ * An immutable query whose sql has been generated once, up front. Create one
+ * with Query.compile() or Database.compile() and keep it around; it is safe
+ * to use from many threads at once. Each call supplies only the args for the ?
+ * parameters.
+ * 
+ * <pre>
+ * CompiledQuery&lt;Person&gt; byName = db.where("name=?").orderBy("id").compile(Person.class);
+ * List&lt;Person&gt; people = byName.results("Bob");
+ * </pre>
+ * 
+ * The placeholders of the sql, including any "in (?)" lists, are found once
+ * here rather than on every call. The row mapper is captured on the first run,
+ * so the query must always return the same columns.
+ */
+public class CompiledQuery<T> {
+
+	private final Database db;
+	private final String sql;
+	private final Class<T> rowClass;
+	private final ExpandedSql.Template template;
+
+	private volatile RowMapper<T> rowMapper;
+
+	CompiledQuery(Database db, String sql, Class<T> rowClass) {
+		this.db = db;
+		this.sql = sql;
+		this.rowClass = rowClass;
+		this.template = new ExpandedSql.Template(sql);
+	}
+
+	/**
+	 * Create a new Query for this sql and these args. Use it for things the
+	 * shortcut methods don't cover, like .transaction().
+	 */
+	public Query query(Object... args) {
+		return new Query(db).compiled(this, args);
+	}
+
+	public List<T> results(Object... args) {
+		return query(args).results(rowClass);
+	}
+
+	public T first(Object... args) {
+		return query(args).first(rowClass);
+	}
+
+	public Stream<T> stream(Object... args) {
+		return query(args).stream(rowClass);
+	}
+
+	public void forEach(Consumer<? super T> action, Object... args) {
+		query(args).forEach(rowClass, action);
+	}
+
+	/**
+	 * Run the sql as a command that doesn't return a result set, and return the
+	 * number of rows affected.
+	 */
+	public int execute(Object... args) {
+		return query(args).execute().getRowsAffected();
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public Class<T> getRowClass() {
+		return rowClass;
+	}
+
+	/**
+	 * Returns the sql and args to send to the driver for these args.
+	 */
+	ExpandedSql expand(Object[] args) {
+		return template.expand(args);
+	}
+
+	/**
+	 * Returns the mapper for this query's rows, building it from the metadata
+	 * the first time.
+	 */
+	RowMapper<T> getRowMapper(ResultSetMetaData meta) throws SQLException {
+		RowMapper<T> mapper = rowMapper;
+		if (mapper == null) {
+			mapper = db.getSqlMaker().getRowMapper(rowClass, meta);
+			rowMapper = mapper;
+		}
+		return mapper;
+	}
+
+}
@@ -0,0 +1,240 @@
+package com.dieselpoint.norm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A second-level cache of entities by class and primary key, used by
+ * Database.findById(). Only classes registered with Database.cacheEntities(),
+ * or annotated with @Cacheable, are cached. Each class has its own bounded,
+ * least-recently-used region with an optional time to live.
+ * <p>
+ * The cache holds copies: callers get a new instance on every hit, so changing
+ * an entity doesn't change the cache. The copy is shallow.
+ * </p>
+ * <p>
+ * Norm's own update(), upsert() and delete() methods, and their batch
+ * versions, drop the rows they write, after commit if they are part of a
+ * transaction. Writes made with straight sql, or by anything other than norm,
+ * are not seen; use a time to live for tables that are written that way.
+ * </p>
+ */
+public class EntityCache {
+
+	private final Map<Class<?>, Region> regions = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the counters for all classes added together.
+	 */
+	public CacheStats getStats() {
+		CacheStats total = new CacheStats(0, 0, 0, 0);
+		for (Region region : regions.values()) {
+			total = total.plus(region.getStats());
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the counters for one class, or null if it isn't cached.
+	 */
+	public CacheStats getStats(Class<?> clazz) {
+		Region region = regions.get(clazz);
+		return region == null ? null : region.getStats();
+	}
+
+	/**
+	 * Drop one entity from the cache.
+	 */
+	public void evict(Class<?> clazz, Object id) {
+		Region region = regions.get(clazz);
+		if (region != null) {
+			region.invalidate(id);
+		}
+	}
+
+	/**
+	 * Drop everything from the cache. Classes stay registered.
+	 */
+	public void clear() {
+		for (Region region : regions.values()) {
+			region.clear();
+		}
+	}
+
+	void register(Class<?> clazz, String table, int maxSize, long ttlNanos) {
+		regions.put(clazz, new Region(clazz, table, maxSize, ttlNanos));
+	}
+
+	Region getRegion(Class<?> clazz) {
+		return regions.get(clazz);
+	}
+
+	boolean isEmpty() {
+		return regions.isEmpty();
+	}
+
+	/**
+	 * Drop every cached entity of every class that is stored in this table.
+	 */
+	void invalidateTable(String table) {
+		for (Region region : regions.values()) {
+			if (region.table.equalsIgnoreCase(table)) {
+				region.clear();
+			}
+		}
+	}
+
+	/**
+	 * Numbers of different types are the same key, so that findById(Foo.class,
+	 * 5) finds the row whose long id is 5.
+	 */
+	static Object normalizeKey(Object id) {
+		if (id instanceof Integer || id instanceof Long || id instanceof Short || id instanceof Byte) {
+			return ((Number) id).longValue();
+		}
+		return id;
+	}
+
+	static class Region {
+
+		private final String table;
+		private final int maxSize;
+		private final long ttlNanos;
+		private final Constructor<?> constructor;
+		private final Field[] fields;
+
+		private final LinkedHashMap<Object, CacheEntry> entries;
+
+		// incremented by every invalidation, so that a load that started before
+		// a write can't put the old row back afterwards
+		private long generation;
+
+		private long hits;
+		private long misses;
+		private long evictions;
+
+		Region(Class<?> clazz, String table, int maxSize, long ttlNanos) {
+			this.table = table;
+			this.maxSize = maxSize;
+			this.ttlNanos = ttlNanos;
+			try {
+				this.constructor = clazz.getDeclaredConstructor();
+				this.constructor.setAccessible(true);
+			} catch (NoSuchMethodException e) {
+				throw new DbException("Can't cache " + clazz.getName() + " without a no-arg constructor");
+			}
+			this.fields = getFields(clazz);
+			this.entries = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest) {
+					if (size() > Region.this.maxSize) {
+						evictions++;
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		/**
+		 * Returns a copy of the cached entity, or null if it isn't cached.
+		 */
+		synchronized Object get(Object id) {
+			Object key = normalizeKey(id);
+			CacheEntry entry = entries.get(key);
+			if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.loadedAt > ttlNanos) {
+				entries.remove(key);
+				evictions++;
+				entry = null;
+			}
+			if (entry == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			return copy(entry.entity);
+		}
+
+		synchronized long getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * Cache a copy of the entity, unless something was invalidated since
+		 * generation was read.
+		 */
+		synchronized void put(Object id, Object entity, long generation) {
+			if (generation == this.generation) {
+				entries.put(normalizeKey(id), new CacheEntry(copy(entity), System.nanoTime()));
+			}
+		}
+
+		synchronized void invalidate(Object id) {
+			generation++;
+			entries.remove(normalizeKey(id));
+		}
+
+		synchronized void clear() {
+			generation++;
+			entries.clear();
+		}
+
+		synchronized CacheStats getStats() {
+			if (ttlNanos > 0) {
+				long now = System.nanoTime();
+				for (Iterator<CacheEntry> it = entries.values().iterator(); it.hasNext();) {
+					if (now - it.next().loadedAt > ttlNanos) {
+						it.remove();
+						evictions++;
+					}
+				}
+			}
+			return new CacheStats(hits, misses, evictions, entries.size());
+		}
+
+		private Object copy(Object entity) {
+			try {
+				Object out = constructor.newInstance();
+				for (Field field : fields) {
+					field.set(out, field.get(entity));
+				}
+				return out;
+			} catch (ReflectiveOperationException e) {
+				throw new DbException(e);
+			}
+		}
+
+		private static Field[] getFields(Class<?> clazz) {
+			List<Field> out = new ArrayList<>();
+			for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+						field.setAccessible(true);
+						out.add(field);
+					}
+				}
+			}
+			return out.toArray(new Field[out.size()]);
+		}
+	}
+
+	private static class CacheEntry {
+		final Object entity;
+		final long loadedAt;
+
+		CacheEntry(Object entity, long loadedAt) {
+			this.entity = entity;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.dieselpoint.norm;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sql and args as they are sent to the driver. Where an arg is a collection
+ * or an array and its placeholder is the whole of an "in (?)" list, the
+ * placeholder is expanded to one per element. The count is padded to the
+ * next power of two by repeating the last element, so a query run with lists
+ * of many different lengths only produces a few distinct statements for the
+ * database and the statement cache. An empty list becomes "in (null)", which
+ * matches nothing. An empty list for "not in (?)" is an error, because there
+ * is no list that matches nothing. Lists anywhere else are turned into
+ * arrays, for array columns. byte[] and char[] args are left alone.
+ */
+final class ExpandedSql {
+
+	final String sql;
+	final Object[] args;
+
+	private ExpandedSql(String sql, Object[] args) {
+		this.sql = sql;
+		this.args = args;
+	}
+
+	static ExpandedSql of(String sql, Object[] args) {
+		if (sql == null || args == null || !hasMultiValued(args)) {
+			return new ExpandedSql(sql, args);
+		}
+		return new Template(sql).expand(args);
+	}
+
+	/**
+	 * The placeholders of a piece of sql, found once so the sql can be expanded
+	 * for many sets of args without scanning it again. Each placeholder is
+	 * either a plain value or the whole of an "in (?)" or "not in (?)" list.
+	 */
+	static final class Template {
+
+		private static final byte VALUE = 0;
+		private static final byte IN_LIST = 1;
+		private static final byte NOT_IN_LIST = 2;
+
+		private final String sql;
+		private final int[] positions;
+		private final byte[] slots;
+
+		Template(String sql) {
+			this.sql = sql;
+			int[] found = new int[8];
+			int count = 0;
+			char quote = 0;
+			for (int i = 0; i < sql.length(); i++) {
+				char c = sql.charAt(i);
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '\'' || c == '"' || c == '`') {
+					quote = c;
+				} else if (c == '?') {
+					if (count == found.length) {
+						found = Arrays.copyOf(found, count * 2);
+					}
+					found[count++] = i;
+				}
+			}
+			positions = Arrays.copyOf(found, count);
+			slots = new byte[count];
+			for (int i = 0; i < count; i++) {
+				if (isInList(sql, positions[i])) {
+					slots[i] = isNotIn(sql, positions[i]) ? NOT_IN_LIST : IN_LIST;
+				}
+			}
+		}
+
+		ExpandedSql expand(Object[] args) {
+			if (args == null || !hasMultiValued(args)) {
+				return new ExpandedSql(sql, args);
+			}
+
+			StringBuilder out = new StringBuilder(sql.length() + 32);
+			List<Object> outArgs = new ArrayList<>(args.length + 16);
+			int from = 0;
+			int argIndex = 0;
+			for (int i = 0; i < positions.length && argIndex < args.length; i++) {
+				out.append(sql, from, positions[i]);
+				from = positions[i] + 1;
+				Object arg = args[argIndex++];
+				if (slots[i] != VALUE && isMultiValued(arg)) {
+					appendInList(arg, slots[i] == NOT_IN_LIST, out, outArgs);
+				} else {
+					out.append('?');
+					outArgs.add(arg instanceof List ? ((List<?>) arg).toArray() : arg);
+				}
+			}
+			out.append(sql, from, sql.length());
+			// args without a placeholder are the driver's problem, as before
+			while (argIndex < args.length) {
+				outArgs.add(args[argIndex++]);
+			}
+			return new ExpandedSql(out.toString(), outArgs.toArray());
+		}
+	}
+
+	private static boolean hasMultiValued(Object[] args) {
+		for (Object arg : args) {
+			if (isMultiValued(arg)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isMultiValued(Object arg) {
+		if (arg instanceof Collection) {
+			return true;
+		}
+		return arg != null && arg.getClass().isArray() && !(arg instanceof byte[]) && !(arg instanceof char[]);
+	}
+
+	/**
+	 * Returns true if the ? at pos is all there is between the parens of an
+	 * "in (...)".
+	 */
+	private static boolean isInList(String sql, int pos) {
+		int after = skipSpace(sql, pos + 1, 1);
+		if (after >= sql.length() || sql.charAt(after) != ')') {
+			return false;
+		}
+		int before = skipSpace(sql, pos - 1, -1);
+		if (before < 0 || sql.charAt(before) != '(') {
+			return false;
+		}
+		int end = skipSpace(sql, before - 1, -1);
+		if (end < 1 || !sql.regionMatches(true, end - 1, "in", 0, 2)) {
+			return false;
+		}
+		return end < 2 || !Character.isJavaIdentifierPart(sql.charAt(end - 2));
+	}
+
+	/**
+	 * Returns true if the "in" before the ? at pos is preceded by "not".
+	 */
+	private static boolean isNotIn(String sql, int pos) {
+		int paren = skipSpace(sql, pos - 1, -1);
+		int in = skipSpace(sql, paren - 1, -1) - 1;
+		int end = skipSpace(sql, in - 1, -1);
+		if (end == in - 1 || end < 2 || !sql.regionMatches(true, end - 2, "not", 0, 3)) {
+			return false;
+		}
+		return end < 3 || !Character.isJavaIdentifierPart(sql.charAt(end - 3));
+	}
+
+	private static int skipSpace(String sql, int pos, int step) {
+		while (pos >= 0 && pos < sql.length() && Character.isWhitespace(sql.charAt(pos))) {
+			pos += step;
+		}
+		return pos;
+	}
+
+	private static void appendInList(Object arg, boolean notIn, StringBuilder out, List<Object> outArgs) {
+		List<Object> values = new ArrayList<>();
+		if (arg instanceof Collection) {
+			values.addAll((Collection<?>) arg);
+		} else {
+			int length = Array.getLength(arg);
+			for (int i = 0; i < length; i++) {
+				values.add(Array.get(arg, i));
+			}
+		}
+
+		if (values.isEmpty()) {
+			if (notIn) {
+				throw new DbException(
+						"Empty list for \"not in (?)\", which would match no rows. Leave the condition out instead.");
+			}
+			out.append("null");
+			return;
+		}
+
+		int size = Integer.highestOneBit(values.size());
+		if (size < values.size()) {
+			size <<= 1;
+		}
+		Object last = values.get(values.size() - 1);
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append('?');
+			outArgs.add(i < values.size() ? values.get(i) : last);
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.dieselpoint.norm;
+
+/**
+ * The Publisher, Subscriber and Subscription interfaces from
+ * java.util.concurrent.Flow (Reactive Streams). Norm targets Java 8, which
+ * doesn't have that class, so it carries its own copy with the same methods
+ * and contracts. Adapting to the JDK or Reactive Streams versions is a
+ * matter of forwarding each call.
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	@FunctionalInterface
+	public interface Publisher<T> {
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	public interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	public interface Subscription {
+		/**
+		 * Ask for n more items. n must be positive.
+		 */
+		void request(long n);
+
+		void cancel();
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.dieselpoint.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+
+/**
+ * Loads rows by a set of primary keys for Database.findByIds(). Where the
+ * database can bind an array, all the ids go in one "= any(?)" parameter.
+ * Otherwise they go in "in (?, ?, ...)" lists of at most MAX_IN_LIST ids,
+ * which ExpandedSql pads to a few fixed sizes. Sets larger than the
+ * database's temp table threshold are written to a temporary table and
+ * joined.
+ */
+class IdLoader<T> {
+
+	static final int MAX_IN_LIST = 512;
+	static final String ID_TABLE = "norm_ids";
+	static final String ID_COLUMN = "norm_id";
+
+	private final Database db;
+	private final Class<T> clazz;
+	private final PojoInfo pojoInfo;
+	private final String key;
+
+	IdLoader(Database db, Class<T> clazz) {
+		this.db = db;
+		this.clazz = clazz;
+		this.pojoInfo = db.getSqlMaker().getPojoInfo(clazz);
+		this.key = pojoInfo.getPrimaryKeyName();
+		if (key == null) {
+			throw new DbException("No primary key on " + clazz.getName());
+		}
+	}
+
+	Map<Object, T> load(Collection<?> ids) {
+		EntityCache.Region region = db.getCacheRegion(clazz);
+		long generation = region == null ? 0 : region.getGeneration();
+
+		// keyed the way EntityCache keys them, so Integer 1 finds a Long 1
+		Map<Object, T> found = new HashMap<>();
+		Map<Object, Object> wanted = new LinkedHashMap<>();
+		for (Object id : ids) {
+			if (id == null) {
+				continue;
+			}
+			Object normalized = EntityCache.normalizeKey(id);
+			if (found.containsKey(normalized) || wanted.containsKey(normalized)) {
+				continue;
+			}
+			Object cached = region == null ? null : region.get(id);
+			if (cached != null) {
+				found.put(normalized, clazz.cast(cached));
+			} else {
+				wanted.put(normalized, id);
+			}
+		}
+
+		if (!wanted.isEmpty()) {
+			for (T row : fetch(new ArrayList<>(wanted.values()))) {
+				Object id = pojoInfo.getValue(row, key);
+				found.put(EntityCache.normalizeKey(id), row);
+				if (region != null) {
+					region.put(id, row, generation);
+				}
+			}
+		}
+
+		Map<Object, T> out = new LinkedHashMap<>();
+		for (Object id : ids) {
+			T row = id == null ? null : found.get(EntityCache.normalizeKey(id));
+			if (row != null) {
+				out.put(id, row);
+			}
+		}
+		return out;
+	}
+
+	private List<T> fetch(List<Object> ids) {
+		SqlMaker sqlMaker = db.getSqlMaker();
+
+		String arrayType = sqlMaker.getIdArrayType(clazz);
+		if (arrayType != null) {
+			return new Query(db).where(key + " = any(?)", new SqlArray(arrayType, ids.toArray())).results(clazz);
+		}
+
+		int threshold = db.getTempTableThreshold();
+		if (threshold > 0 && ids.size() > threshold) {
+			String createSql = sqlMaker.getCreateIdTableSql(clazz, ID_TABLE, ID_COLUMN);
+			if (createSql != null) {
+				return fetchJoined(createSql, ids);
+			}
+		}
+
+		List<T> rows = new ArrayList<>(ids.size());
+		for (int start = 0; start < ids.size(); start += MAX_IN_LIST) {
+			List<Object> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IN_LIST));
+			rows.addAll(new Query(db).where(key + " in (?)", chunk).results(clazz));
+		}
+		return rows;
+	}
+
+	/**
+	 * Write the ids to the temporary table and join it, all on one connection.
+	 * The table is left in place, empty, for the next call on that connection.
+	 */
+	private List<T> fetchJoined(String createSql, List<Object> ids) {
+		Transaction trans = db.startTransaction();
+		boolean committed = false;
+		try {
+			Connection con = trans.getConnection();
+			try (Statement state = con.createStatement()) {
+				state.execute(createSql);
+				state.execute("delete from " + ID_TABLE);
+			}
+
+			int batchSize = db.getBatchSize();
+			try (PreparedStatement state = con
+					.prepareStatement("insert into " + ID_TABLE + " (" + ID_COLUMN + ") values (?)")) {
+				for (int i = 0; i < ids.size(); i++) {
+					state.setObject(1, ids.get(i));
+					state.addBatch();
+					if ((i + 1) % batchSize == 0 || i == ids.size() - 1) {
+						state.executeBatch();
+					}
+				}
+			}
+
+			List<T> rows = new Query(db).transaction(trans).innerJoin(ID_TABLE)
+					.on(pojoInfo.getTable() + "." + key + " = " + ID_TABLE + "." + ID_COLUMN).results(clazz);
+
+			try (Statement state = con.createStatement()) {
+				state.execute("delete from " + ID_TABLE);
+			}
+			trans.commit();
+			committed = true;
+			return rows;
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			if (!committed) {
+				try {
+					trans.rollback();
+				} catch (DbException e) {
+					// the original exception is more useful
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.dieselpoint.norm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A QueryListener that keeps a latency histogram of the total time of each
+ * statement, by fingerprint, and one of the time spent waiting for
+ * connections. Recording takes no locks. To keep memory bounded, statements
+ * beyond the first maxFingerprints distinct fingerprints are lumped together
+ * under OTHER.
+ * 
+ * <pre>
+ * LatencyListener latency = new LatencyListener();
+ * db.addQueryListener(latency);
+ * ...
+ * latency.getHistograms().forEach((sql, h) -&gt; System.out.println(h + " " + sql));
+ * </pre>
+ */
+public class LatencyListener implements QueryListener {
+
+	public static final String OTHER = "(other)";
+
+	private final int maxFingerprints;
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+	private final LatencyHistogram connectionWait = new LatencyHistogram();
+
+	public LatencyListener() {
+		this(1000);
+	}
+
+	public LatencyListener(int maxFingerprints) {
+		this.maxFingerprints = maxFingerprints;
+	}
+
+	@Override
+	public void connectionAcquired(QueryEvent event, long waitNanos) {
+		connectionWait.record(waitNanos);
+	}
+
+	@Override
+	public void completed(QueryEvent event, long rows, long mappingNanos, long totalNanos) {
+		getOrAdd(histograms, event.getFingerprint(), LatencyHistogram::new).record(totalNanos);
+	}
+
+	@Override
+	public void failed(QueryEvent event, Throwable error, long totalNanos) {
+		getOrAdd(errors, event.getFingerprint(), LongAdder::new).increment();
+	}
+
+	private <V> V getOrAdd(Map<String, V> map, String fingerprint, Supplier<V> factory) {
+		String key = fingerprint == null ? OTHER : fingerprint;
+		V value = map.get(key);
+		if (value == null) {
+			if (map.size() >= maxFingerprints) {
+				key = OTHER;
+			}
+			value = map.computeIfAbsent(key, k -> factory.get());
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the histogram for statements with this fingerprint, or null if
+	 * there haven't been any.
+	 */
+	public LatencyHistogram getHistogram(String fingerprint) {
+		return histograms.get(fingerprint);
+	}
+
+	/**
+	 * Returns the histograms by fingerprint. The map is live.
+	 */
+	public Map<String, LatencyHistogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+
+	/**
+	 * Returns the number of statements with this fingerprint that failed.
+	 */
+	public long getErrorCount(String fingerprint) {
+		LongAdder count = errors.get(fingerprint);
+		return count == null ? 0 : count.sum();
+	}
+
+	public LatencyHistogram getConnectionWaitHistogram() {
+		return connectionWait;
+	}
+
+	public void reset() {
+		histograms.clear();
+		errors.clear();
+		connectionWait.reset();
+	}
+
+}
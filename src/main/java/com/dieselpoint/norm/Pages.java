@@ -0,0 +1,146 @@
+package com.dieselpoint.norm;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+
+/**
+ * The pages of a query, fetched with keyset pagination. Create one with
+ * Query.pages(), then iterate over it:
+ * 
+ * <pre>
+ * for (List&lt;Person&gt; page : db.where("active=?", true).pages(Person.class, 1000).prefetch(true)) {
+ * 	...
+ * }
+ * </pre>
+ * 
+ * Each iteration starts again from the first page.
+ */
+public class Pages<T> implements Iterable<List<T>> {
+
+	private final Query query;
+	private final SqlMaker sqlMaker;
+	private final Class<T> clazz;
+	private final int pageSize;
+
+	private String sortKey;
+	private boolean prefetch;
+
+	Pages(Query query, SqlMaker sqlMaker, Class<T> clazz, int pageSize) {
+		this.query = query;
+		this.sqlMaker = sqlMaker;
+		this.clazz = clazz;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Page by this column instead of the primary key. Its values must be unique
+	 * and not null, and it should be indexed.
+	 */
+	public Pages<T> sortKey(String sortKey) {
+		this.sortKey = sortKey;
+		return this;
+	}
+
+	/**
+	 * If true, start fetching the next page on another connection, using the
+	 * database's executor, while the caller works on the current one. Ignored
+	 * if the query is part of a transaction.
+	 */
+	public Pages<T> prefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+		return this;
+	}
+
+	@Override
+	public Iterator<List<T>> iterator() {
+		String key = sortKey;
+		if (key == null) {
+			key = sqlMaker.getPojoInfo(clazz).getPrimaryKeyName();
+			if (key == null) {
+				throw new DbException("No primary key on " + clazz.getName() + "; pass a sortKey() to page by");
+			}
+		}
+		return new PageIterator(key, prefetch && query.getTransaction() == null);
+	}
+
+	private class PageIterator implements Iterator<List<T>> {
+
+		private final String key;
+		private final boolean prefetch;
+
+		private List<T> current;
+		private CompletableFuture<List<T>> pending;
+		private Object lastKey;
+		private boolean exhausted;
+
+		PageIterator(String key, boolean prefetch) {
+			this.key = key;
+			this.prefetch = prefetch;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (current == null && !exhausted) {
+				List<T> page = pending != null ? join(pending) : fetch(lastKey);
+				pending = null;
+				if (page.size() < pageSize) {
+					exhausted = true;
+				}
+				if (!page.isEmpty()) {
+					current = page;
+					lastKey = getKey(page.get(page.size() - 1));
+					if (!exhausted && prefetch) {
+						Query next = query.pageQuery(key, lastKey, pageSize);
+						pending = query.getDatabase().runAsync(next, () -> next.results(clazz));
+					}
+				}
+			}
+			return current != null;
+		}
+
+		@Override
+		public List<T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			List<T> page = current;
+			current = null;
+			return page;
+		}
+
+		private List<T> fetch(Object afterKey) {
+			return query.pageQuery(key, afterKey, pageSize).results(clazz);
+		}
+
+		private Object getKey(T row) {
+			Object value;
+			if (row instanceof Map) {
+				value = ((Map<?, ?>) row).get(key);
+			} else {
+				value = sqlMaker.getPojoInfo(clazz).getValue(row, key);
+			}
+			if (value == null) {
+				throw new DbException("Sort key " + key + " is null or was not selected");
+			}
+			return value;
+		}
+
+		private List<T> join(CompletableFuture<List<T>> future) {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new DbException(e.getCause());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,328 @@
+package com.dieselpoint.norm;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+
+/**
+ * A scan of a query's rows split into key ranges that are read concurrently on
+ * separate pooled connections. Create one with Query.parallelScan(), set any
+ * options, then call forEach():
+ * 
+ * <pre>
+ * db.where("active=?", true).parallelScan(Person.class, 8).maxConcurrency(4).forEach(person -&gt; index(person));
+ * </pre>
+ * 
+ * Partitions run on the database's executor. By default the key range is
+ * found with "select min(key), max(key)", which only works for integer keys;
+ * for other keys, pass splitPoints().
+ */
+public class ParallelScan<T> {
+
+	private static final int QUEUE_SIZE = 1000;
+	private static final Object END = new Object();
+
+	private final Query query;
+	private final SqlMaker sqlMaker;
+	private final Class<T> clazz;
+	private final int partitions;
+
+	private String key;
+	private Object[] splitPoints;
+	private boolean ordered;
+	private int maxConcurrency;
+
+	ParallelScan(Query query, SqlMaker sqlMaker, Class<T> clazz, int partitions) {
+		this.query = query;
+		this.sqlMaker = sqlMaker;
+		this.clazz = clazz;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * Split on this column instead of the primary key. It should be indexed.
+	 */
+	public ParallelScan<T> key(String key) {
+		this.key = key;
+		return this;
+	}
+
+	/**
+	 * Use these values, in ascending order, as the boundaries between
+	 * partitions instead of splitting the min/max range evenly. n split points
+	 * make n + 1 partitions.
+	 */
+	public ParallelScan<T> splitPoints(Object... splitPoints) {
+		this.splitPoints = splitPoints;
+		return this;
+	}
+
+	/**
+	 * If true, the action gets the rows in key order, all on the calling thread.
+	 * Partitions are still read concurrently; rows from later partitions wait
+	 * in a bounded queue until the earlier ones are done.
+	 */
+	public ParallelScan<T> ordered(boolean ordered) {
+		this.ordered = ordered;
+		return this;
+	}
+
+	/**
+	 * The most partitions to read at once. Defaults to the database's
+	 * maxPoolSize.
+	 */
+	public ParallelScan<T> maxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+		return this;
+	}
+
+	/**
+	 * Run the scan and pass each row to the action. Returns when every partition
+	 * is done. If a partition or the action fails, the remaining partitions are
+	 * stopped and the first failure is thrown.
+	 */
+	public void forEach(Consumer<? super T> action) {
+		String scanKey = key;
+		if (scanKey == null) {
+			scanKey = sqlMaker.getPojoInfo(clazz).getPrimaryKeyName();
+			if (scanKey == null) {
+				throw new DbException("No primary key on " + clazz.getName() + "; pass a key() to split on");
+			}
+		}
+		List<Query> parts = getPartitionQueries(scanKey);
+		int cap = maxConcurrency > 0 ? maxConcurrency : query.getDatabase().getMaxPoolSize();
+		new Scan(parts, action, Math.min(cap, parts.size())).run();
+	}
+
+	private List<Query> getPartitionQueries(String scanKey) {
+		List<Object> splits = splitPoints != null ? Arrays.asList(splitPoints) : computeSplitPoints(scanKey);
+
+		List<Query> parts = new ArrayList<>();
+		for (int i = 0; i <= splits.size(); i++) {
+			List<String> clauses = new ArrayList<>();
+			List<Object> args = new ArrayList<>();
+			if (i > 0) {
+				clauses.add(scanKey + " >= ?");
+				args.add(splits.get(i - 1));
+			}
+			if (i < splits.size()) {
+				clauses.add(scanKey + " < ?");
+				args.add(splits.get(i));
+			}
+			Query part = query.derive(clauses, args);
+			if (ordered) {
+				part.orderBy(scanKey);
+			}
+			parts.add(part);
+		}
+		return parts;
+	}
+
+	private List<Object> computeSplitPoints(String scanKey) {
+		Query bounds = query.derive(Collections.emptyList(), Collections.emptyList());
+		bounds.select("min(" + scanKey + "), max(" + scanKey + ")").selectFrom(clazz);
+		@SuppressWarnings("rawtypes")
+		List<LinkedHashMap> rows = bounds.results(LinkedHashMap.class);
+		if (rows.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Object[] minMax = rows.get(0).values().toArray();
+		if (minMax[0] == null || minMax[1] == null) {
+			return Collections.emptyList(); // no rows
+		}
+		BigInteger min = toBigInteger(minMax[0]);
+		BigInteger max = toBigInteger(minMax[1]);
+
+		BigInteger span = max.subtract(min).add(BigInteger.ONE);
+		int count = span.min(BigInteger.valueOf(partitions)).intValue();
+		List<Object> splits = new ArrayList<>();
+		for (int i = 1; i < count; i++) {
+			BigInteger offset = span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count));
+			splits.add(min.add(offset).longValue());
+		}
+		return splits;
+	}
+
+	private BigInteger toBigInteger(Object value) {
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return BigInteger.valueOf(((Number) value).longValue());
+		}
+		if (value instanceof BigInteger) {
+			return (BigInteger) value;
+		}
+		throw new DbException("Can only split integer keys evenly, not " + value.getClass().getName()
+				+ "; pass splitPoints() instead");
+	}
+
+	/**
+	 * One run of forEach(). Partitions are started in order, no more than cap at
+	 * a time; each one that finishes starts the next.
+	 */
+	private class Scan {
+
+		private final List<Query> parts;
+		private final Consumer<? super T> action;
+		private final int cap;
+		private final List<BlockingQueue<Object>> queues = new ArrayList<>();
+
+		private final AtomicInteger nextPart = new AtomicInteger();
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private final CountDownLatch finished;
+		private volatile boolean aborted;
+
+		Scan(List<Query> parts, Consumer<? super T> action, int cap) {
+			this.parts = parts;
+			this.action = action;
+			this.cap = cap;
+			this.finished = new CountDownLatch(parts.size());
+			if (ordered) {
+				for (int i = 0; i < parts.size(); i++) {
+					queues.add(new ArrayBlockingQueue<>(QUEUE_SIZE));
+				}
+			}
+		}
+
+		void run() {
+			for (int i = 0; i < cap; i++) {
+				launchNext();
+			}
+			try {
+				if (ordered) {
+					drainInOrder();
+				}
+				finished.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail(e);
+				// the partitions see the abort and stop on their own
+			} catch (RuntimeException | Error e) {
+				fail(e);
+				awaitQuietly();
+			}
+
+			Throwable t = failure.get();
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			} else if (t instanceof Error) {
+				throw (Error) t;
+			} else if (t != null) {
+				throw new DbException(t);
+			}
+		}
+
+		private void launchNext() {
+			while (true) {
+				int i = nextPart.getAndIncrement();
+				if (i >= parts.size()) {
+					return;
+				}
+				if (aborted) {
+					finished.countDown();
+					continue;
+				}
+				Query part = parts.get(i);
+				try {
+					query.getDatabase().runAsync(part, () -> {
+						scanPartition(i, part);
+						return null;
+					}).whenComplete((result, t) -> {
+						if (t != null) {
+							fail(t);
+						}
+						finished.countDown();
+						launchNext();
+					});
+				} catch (RuntimeException e) {
+					fail(e);
+					finished.countDown();
+					continue;
+				}
+				return;
+			}
+		}
+
+		private void scanPartition(int i, Query part) {
+			if (ordered) {
+				BlockingQueue<Object> queue = queues.get(i);
+				part.forEach(clazz, row -> put(queue, row));
+				put(queue, END);
+			} else {
+				part.forEach(clazz, row -> {
+					if (aborted) {
+						throw new Aborted();
+					}
+					action.accept(row);
+				});
+			}
+		}
+
+		private void put(BlockingQueue<Object> queue, Object item) {
+			try {
+				while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+					if (aborted) {
+						throw new Aborted();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new Aborted();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void drainInOrder() throws InterruptedException {
+			for (BlockingQueue<Object> queue : queues) {
+				while (true) {
+					Object item = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (item == END) {
+						break;
+					}
+					if (item != null) {
+						action.accept((T) item);
+					} else if (aborted) {
+						return;
+					}
+				}
+			}
+		}
+
+		private void fail(Throwable t) {
+			if (!(t instanceof Aborted)) {
+				failure.compareAndSet(null, t);
+			}
+			aborted = true;
+		}
+
+		private void awaitQuietly() {
+			try {
+				finished.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Thrown inside a partition to stop it after another one has failed.
+	 */
+	private static class Aborted extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Aborted() {
+			super("Parallel scan aborted", null, false, false);
+		}
+	}
+
+}
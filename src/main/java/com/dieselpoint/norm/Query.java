@@ -2,6 +2,7 @@ package com.dieselpoint.norm;
 
 import com.dieselpoint.norm.sqlmakers.PojoInfo;
 import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.RowMapper;
 import com.dieselpoint.norm.sqlmakers.SqlMaker;
 
 import java.sql.Connection;
@@ -10,10 +11,21 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Holds all of the information in a query. Create a query using
@@ -29,11 +41,19 @@ public class Query {
 	private String sql, columns, table, joinType, joinTable, joinClause, orderBy;
 	List<String> where;
 	private Map<String, List<String>> joinTables;
-	private Integer limit, offset;
+	private Integer limit, offset, fetchSize, batchSize, maxRows;
+	private Duration cacheTtl;
 	private Object insertRow;
 
 	private Object[] args;
 
+	/*
+	 * Binds the args for a single-row insert, update, upsert or delete straight
+	 * from the pojo. Takes the place of args when set.
+	 */
+	private ArgBinder argBinder;
+	private Class<?> argRowClass;
+
 	private int rowsAffected;
 	
 	private ResultSetMetaData meta;
@@ -44,6 +64,18 @@ public class Query {
 
 	private Transaction transaction;
 
+	private CompiledQuery<?> compiledQuery;
+
+	/*
+	 * The statement that is running, so that cancel() can reach it from another
+	 * thread. It is cleared under cancelLock before the statement is closed or
+	 * handed back to the transaction's cache, so a late cancel() can't cancel a
+	 * statement that some other query is now using.
+	 */
+	private volatile PreparedStatement currentStatement;
+	private volatile boolean cancelled;
+	private final Object cancelLock = new Object();
+
 	public Query(Database db) {
 		this.db = db;
 		this.sqlMaker = db.getSqlMaker();
@@ -102,6 +134,9 @@ public class Query {
 	 * Add a where clause and some parameters to a query. Has no effect if the
 	 * .sql() method is used.
 	 * 
+	 * An arg that is a collection or an array fills an "in (?)" list, as in
+	 * where("id in (?)", ids).
+	 * 
 	 * @param where Example: "name=?"
 	 * @param args  The parameter values to use in the where, example: "Bob"
 	 */
@@ -133,6 +168,8 @@ public class Query {
 	public Query sql(String sql, Object... args) {
 		this.sql = sql;
 		this.args = args;
+		this.argBinder = null;
+		this.argRowClass = null;
 		return this;
 	}
 
@@ -146,16 +183,22 @@ public class Query {
 	public Query sql(String sql, List<?> args) {
 		this.sql = sql;
 		this.args = args.toArray();
+		this.argBinder = null;
+		this.argRowClass = null;
 		return this;
 	}
 
 	public Query args(Object... args) {
 		this.args = args;
+		this.argBinder = null;
+		this.argRowClass = null;
 		return this;
 	}
 
 	public Query args(List<?> args) {
 		this.args = args.toArray();
+		this.argBinder = null;
+		this.argRowClass = null;
 		return this;
 	}
 
@@ -174,12 +217,34 @@ public class Query {
 		return this;
 	}
 
+	/**
+	 * Serve .results() and .first() for this query from the database's query
+	 * cache, keyed by sql, args and row class, for up to ttl. Entries are dropped
+	 * early when norm writes to a table the query reads; for queries written with
+	 * .sql(), name the table with .table() or the row class's @Table. Ignored in
+	 * a transaction. See {@link Database#getQueryCache()}.
+	 */
+	public Query cached(Duration ttl) {
+		this.cacheTtl = ttl;
+		return this;
+	}
+
+	/**
+	 * Give the driver a hint as to how many rows to fetch from the server at a
+	 * time. Mostly useful with .stream() and .forEach(). If not set, the sql maker
+	 * picks a default suited to its database.
+	 */
+	public Query fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
 	/**
 	 * Returns the first row in a query in a pojo, or null if the query returns no
 	 * results. Will return it in a Map if a class that implements Map is specified.
 	 */
 	public <T> T first(Class<T> clazz) {
-		List<T> list = results(clazz);
+		List<T> list = resultsUpTo(clazz, 1);
 		if (list.size() > 0) {
 			return list.get(0);
 		} else {
@@ -192,150 +257,670 @@ public class Query {
 	}
 
 	/**
-	 * Provides the results as a list of Map objects instead of a list of pojos.
+	 * Returns the only row of a query, or null if there are none. Throws an
+	 * exception if there is more than one. Reads at most two rows.
 	 */
-	private List<Map<String, Object>> resultsMap(Class<Map<String, Object>> clazz) {
+	public <T> T one(Class<T> clazz) {
+		List<T> list = resultsUpTo(clazz, 2);
+		if (list.size() > 1) {
+			throw new DbException("Expected one row, got more than one");
+		}
+		return list.isEmpty() ? null : list.get(0);
+	}
 
-		List<Map<String, Object>> out = new ArrayList<Map<String, Object>>();
-		Connection con = null;
-		PreparedStatement state = null;
+	/**
+	 * Returns true if the query has any rows, using "select 1 ... limit 1" so
+	 * that no rows are mapped. The table comes from .table().
+	 */
+	public boolean exists() {
+		return exists(null);
+	}
+
+	/**
+	 * Returns true if the query has any rows, taking the table from clazz if
+	 * .table() wasn't called.
+	 */
+	public boolean exists(Class<?> clazz) {
+		return readScalar(sqlMaker.getExistsSql(this, clazz), rs -> rs.next());
+	}
+
+	/**
+	 * Returns the number of rows in the query, using "select count(*)". The
+	 * table comes from .table().
+	 */
+	public long count() {
+		return count(null);
+	}
 
+	/**
+	 * Returns the number of rows in the query, taking the table from clazz if
+	 * .table() wasn't called.
+	 */
+	public long count(Class<?> clazz) {
+		return readScalar(sqlMaker.getCountSql(this, clazz), rs -> rs.next() ? rs.getLong(1) : 0L);
+	}
+
+	/**
+	 * Run the query with "limit n" added, if it is not written in straight sql
+	 * and has no limit of its own, and with the driver told to stop after n rows.
+	 */
+	private <T> List<T> resultsUpTo(Class<T> clazz, int n) {
+		boolean addLimit = sql == null && limit == null;
+		if (addLimit) {
+			limit = n;
+		}
+		maxRows = n;
 		try {
-			if (sql == null) {
-				sql = sqlMaker.getSelectSql(this, clazz);
+			return results(clazz);
+		} finally {
+			maxRows = null;
+			if (addLimit) {
+				// leave the query as it was, so it can still be run in full
+				limit = null;
+				sql = null;
 			}
+		}
+	}
+
+	private interface ScalarReader<R> {
+		R read(ResultSet rs) throws SQLException;
+	}
 
+	/**
+	 * Run a query that returns a single value, using this query's args.
+	 */
+	private <R> R readScalar(String scalarSql, ScalarReader<R> reader) {
+		if (transaction != null) {
+			transaction.flush();
+		}
+		Connection con = null;
+		PreparedStatement state = null;
+		String oldSql = sql;
+		sql = scalarSql;
+		QueryTimer timer = startTimer(scalarSql, null);
+		try {
 			Connection localCon;
 			if (transaction == null) {
 				localCon = db.getConnection();
-				con = localCon; // con gets closed below if non-null
+				con = localCon;
+				if (timer != null) {
+					timer.connectionAcquired();
+				}
 			} else {
 				localCon = transaction.getConnection();
 			}
-
-			state = localCon.prepareStatement(sql);
-			loadArgs(state);
+			ExpandedSql bound = expand(sql, args);
+			state = prepare(localCon, bound.sql, false);
+			state.setMaxRows(1);
+			loadArgs(state, bound.args);
+			if (timer != null) {
+				timer.prepared();
+			}
 
 			debug(state);
 
-			ResultSet rs = state.executeQuery();
-
-			meta = rs.getMetaData();
-			int colCount = meta.getColumnCount();
-
-			while (rs.next()) {
-				Map<String, Object> map = clazz.newInstance();
-
-				for (int i = 1; i <= colCount; i++) {
-					String colName = meta.getColumnLabel(i);
-					map.put(colName, rs.getObject(i));
+			try (ResultSet rs = state.executeQuery()) {
+				if (timer != null) {
+					timer.executed();
 				}
-				out.add(map);
+				R result = reader.read(rs);
+				if (timer != null) {
+					timer.completed(1);
+				}
+				return result;
 			}
 
-		} catch (InstantiationException | IllegalAccessException | SQLException | IllegalArgumentException e) {
-			throw new DbException(e);
+		} catch (SQLException | IllegalArgumentException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
+			DbException dbe = new DbException(e);
+			dbe.setSql(scalarSql);
+			throw dbe;
+		} catch (DbException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
+			throw e;
 		} finally {
-			close(state);
+			sql = oldSql;
+			release(state);
 			close(con);
 		}
-
-		return out;
 	}
 
 	/**
 	 * Execute a "select" query and return a list of results where each row is an
 	 * instance of clazz. Returns an empty list if there are no results.
 	 */
-	@SuppressWarnings("unchecked")
 	public <T> List<T> results(Class<T> clazz) {
+		if (cacheTtl != null && transaction == null) {
+			return cachedResults(clazz);
+		}
+		List<T> out = new ArrayList<T>();
+		try (ResultIterator<T> it = iterator(clazz, false)) {
+			while (it.hasNext()) {
+				out.add(it.next());
+			}
+		}
+		return out;
+	}
 
-		if (Map.class.isAssignableFrom(clazz)) {
-			return (List<T>) resultsMap((Class<Map<String, Object>>) clazz);
+	@SuppressWarnings("unchecked")
+	private <T> List<T> cachedResults(Class<T> clazz) {
+		if (sql == null) {
+			sql = sqlMaker.getSelectSql(this, clazz);
+		}
+		QueryCache cache = db.getQueryCache();
+		QueryCache.Key key = new QueryCache.Key(sql, args, clazz, maxRows == null ? 0 : maxRows);
+		List<?> rows = cache.get(key);
+		if (rows != null) {
+			return new ArrayList<T>((List<T>) rows);
 		}
 
-		List<T> out = new ArrayList<T>();
+		List<String> tables = QueryCache.normalizeTables(getTables(clazz));
+		long[] versions = cache.getVersions(tables);
+		Duration ttl = cacheTtl;
+		cacheTtl = null;
+		List<T> out;
+		try {
+			out = results(clazz);
+		} finally {
+			cacheTtl = ttl;
+		}
+		cache.put(key, tables, versions, out, ttl.toNanos());
+		return out;
+	}
+
+	/**
+	 * Returns the tables this query reads: the one given to .table() or named by
+	 * the row class, and any joined tables.
+	 */
+	private List<String> getTables(Class<?> clazz) {
+		List<String> tables = new ArrayList<>();
+		if (table != null) {
+			tables.add(table);
+		} else if (!Map.class.isAssignableFrom(clazz)) {
+			String classTable = sqlMaker.getPojoInfo(clazz).getTable();
+			if (classTable != null) {
+				tables.add(classTable);
+			}
+		}
+		if (joinTables != null) {
+			tables.addAll(joinTables.keySet());
+		}
+		return tables;
+	}
+
+	/**
+	 * Execute a "select" query and return the results as a Stream where each row
+	 * is mapped to an instance of clazz as the driver fetches it, so the result
+	 * set does not have to fit in memory. The sql maker configures the statement
+	 * as a server-side cursor for its flavor of sql; see .fetchSize().
+	 * <p>
+	 * The Stream holds the statement and connection open until it is exhausted or
+	 * closed, so use it in a try-with-resources block. A connection that belongs
+	 * to a transaction is left open.
+	 * </p>
+	 */
+	public <T> Stream<T> stream(Class<T> clazz) {
+		ResultIterator<T> it = iterator(clazz, true);
+		Spliterator<T> split = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED);
+		return StreamSupport.stream(split, false).onClose(it::close);
+	}
+
+	/**
+	 * Execute a "select" query and pass each row to the action as it is fetched.
+	 * Like .stream(), the rows are not held in memory. The statement and
+	 * connection are released before this method returns.
+	 */
+	public <T> void forEach(Class<T> clazz, Consumer<? super T> action) {
+		try (ResultIterator<T> it = iterator(clazz, true)) {
+			while (it.hasNext()) {
+				action.accept(it.next());
+			}
+		}
+	}
+
+	/**
+	 * Walk the results of this "select" query a page at a time using keyset
+	 * (seek) pagination: each page is fetched with "where key &gt; ? order by key
+	 * limit pageSize", continuing from the last key seen, so every page costs
+	 * the same no matter how deep it is. The key is the primary key unless
+	 * Pages.sortKey() says otherwise, and it must be unique and selected. Can't
+	 * be combined with .sql(), .orderBy(), .limit() or .offset().
+	 */
+	public <T> Pages<T> pages(Class<T> clazz, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		if (sql != null || orderBy != null || limit != null || offset != null) {
+			throw new DbException("pages() builds its own sql, order by and limit");
+		}
+		return new Pages<T>(this, sqlMaker, clazz, pageSize);
+	}
+
+	/**
+	 * Scan the rows of this "select" query in parallel: the primary key range
+	 * is split into partitions that are read concurrently, each on its own
+	 * pooled connection, and every row is passed to the action. The action is
+	 * called from several threads at once and must be thread-safe; see
+	 * ParallelScan.ordered() for a single-threaded, in-order alternative.
+	 * Returns after all rows have been processed.
+	 */
+	public <T> void parallelScan(Class<T> clazz, int partitions, Consumer<? super T> action) {
+		parallelScan(clazz, partitions).forEach(action);
+	}
+
+	/**
+	 * Set up a parallel scan with options. Call .forEach() on the result to run
+	 * it. See .parallelScan(Class, int, Consumer).
+	 */
+	public <T> ParallelScan<T> parallelScan(Class<T> clazz, int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("partitions must be at least 1");
+		}
+		if (sql != null || orderBy != null || limit != null || offset != null) {
+			throw new DbException("parallelScan() builds its own sql, order by and limit");
+		}
+		if (transaction != null) {
+			throw new DbException("parallelScan() uses several connections and can't be part of a transaction");
+		}
+		return new ParallelScan<T>(this, sqlMaker, clazz, partitions);
+	}
+
+	/**
+	 * Create a query for one page of .pages(), with this query's columns, table,
+	 * joins and where clause plus "key &gt; afterKey".
+	 * 
+	 * @param afterKey the key of the last row on the previous page, or null for
+	 *                 the first page
+	 */
+	Query pageQuery(String key, Object afterKey, int pageSize) {
+		Query page;
+		if (afterKey == null) {
+			page = derive(Collections.emptyList(), Collections.emptyList());
+		} else {
+			page = derive(Collections.singletonList(key + " > ?"), Collections.singletonList(afterKey));
+		}
+		page.orderBy = key;
+		page.limit = pageSize;
+		return page;
+	}
+
+	/**
+	 * Create a new query with the same sql, clauses, args and settings, so that
+	 * it can be run without touching this one. Running a query fills in its sql
+	 * and result metadata, so one query can't be run from several threads.
+	 */
+	Query copy() {
+		Query copy = new Query(db);
+		copy.sqlMaker = sqlMaker;
+		copy.sql = sql;
+		copy.columns = columns;
+		copy.table = table;
+		copy.joinType = joinType;
+		copy.joinTable = joinTable;
+		copy.joinClause = joinClause;
+		copy.joinTables = new HashMap<>(joinTables);
+		copy.orderBy = orderBy;
+		copy.where = where == null ? null : new ArrayList<>(where);
+		copy.args = args == null ? null : args.clone();
+		copy.limit = limit;
+		copy.offset = offset;
+		copy.fetchSize = fetchSize;
+		copy.batchSize = batchSize;
+		copy.maxRows = maxRows;
+		copy.cacheTtl = cacheTtl;
+		copy.pojoInfo = pojoInfo;
+		copy.transaction = transaction;
+		copy.compiledQuery = compiledQuery;
+		return copy;
+	}
+
+	/**
+	 * Create a new query with this query's columns, table, joins, where clause
+	 * and args, plus some more where clauses and their args. The existing
+	 * clauses are wrapped in parentheses so that an "or" in one of them can't
+	 * change the meaning of the new ones.
+	 */
+	Query derive(List<String> moreWhere, List<Object> moreArgs) {
+		Query derived = new Query(db);
+		derived.columns = columns;
+		derived.table = table;
+		derived.joinType = joinType;
+		derived.joinTable = joinTable;
+		derived.joinClause = joinClause;
+		derived.joinTables = joinTables;
+		derived.fetchSize = fetchSize;
+		derived.transaction = transaction;
+
+		List<String> derivedWhere = new ArrayList<>();
+		List<Object> derivedArgs = new ArrayList<>();
+		if (where != null) {
+			for (String clause : where) {
+				derivedWhere.add("(" + clause + ")");
+			}
+		}
+		if (args != null) {
+			Collections.addAll(derivedArgs, args);
+		}
+		derivedWhere.addAll(moreWhere);
+		derivedArgs.addAll(moreArgs);
+		derived.where = derivedWhere.isEmpty() ? null : derivedWhere;
+		derived.args = derivedArgs.toArray();
+		return derived;
+	}
+
+	/**
+	 * Generate the select sql now, taking the table and columns from rowClass,
+	 * so that the results can be read into a different class, like a Map.
+	 */
+	Query selectFrom(Class<?> rowClass) {
+		sql = sqlMaker.getSelectSql(this, rowClass);
+		return this;
+	}
+
+	Database getDatabase() {
+		return db;
+	}
+
+	Transaction getTransaction() {
+		return transaction;
+	}
+
+	/**
+	 * Returns a Publisher that runs this "select" query for each subscriber and
+	 * sends rows only as fast as the subscriber requests them. Rows are read
+	 * from an open cursor and mapped on the database's executor, as with
+	 * .stream(). The statement and connection are released on completion,
+	 * error or cancel. Each subscriber runs its own copy of the query, and open
+	 * cursors count against the same maxPoolSize limit as async queries.
+	 */
+	public <T> Flow.Publisher<T> publish(Class<T> clazz) {
+		return new QueryPublisher<T>(this, clazz, db.getExecutor());
+	}
+
+	/**
+	 * Execute a "select" query on the database's executor. See
+	 * {@link Database#setExecutor(java.util.concurrent.Executor) setExecutor}.
+	 * Calling cancel(true) on the future cancels the statement if it is
+	 * running.
+	 */
+	public <T> CompletableFuture<List<T>> resultsAsync(Class<T> clazz) {
+		return db.runAsync(this, () -> results(clazz));
+	}
+
+	/**
+	 * Returns the first row of a query on the database's executor. See
+	 * .resultsAsync().
+	 */
+	public <T> CompletableFuture<T> firstAsync(Class<T> clazz) {
+		return db.runAsync(this, () -> first(clazz));
+	}
+
+	/**
+	 * Execute a command on the database's executor. See .resultsAsync().
+	 */
+	public CompletableFuture<Query> executeAsync() {
+		return db.runAsync(this, this::execute);
+	}
+
+	/**
+	 * Cancel this query from another thread. If a statement is running, it is
+	 * cancelled with Statement.cancel(); if not, the query fails when it tries
+	 * to run. Not all drivers support cancelling a statement.
+	 */
+	public void cancel() {
+		cancelled = true;
+		synchronized (cancelLock) {
+			PreparedStatement state = currentStatement;
+			if (state != null) {
+				try {
+					state.cancel();
+				} catch (SQLException e) {
+					// the statement may have finished already
+				}
+			}
+		}
+	}
+
+	/**
+	 * Generate the select sql for this query once and return it as a
+	 * CompiledQuery that can be run many times, from many threads, with
+	 * different args. Any args already given to .where() or .sql() are not
+	 * kept; pass them to the CompiledQuery on each call.
+	 */
+	public <T> CompiledQuery<T> compile(Class<T> clazz) {
+		String compiledSql = sql;
+		if (compiledSql == null) {
+			compiledSql = sqlMaker.getSelectSql(this, clazz);
+		}
+		return new CompiledQuery<T>(db, compiledSql, clazz);
+	}
+
+	/**
+	 * Set up this query to run the sql of a compiled query with the given args.
+	 */
+	Query compiled(CompiledQuery<?> compiledQuery, Object[] args) {
+		this.compiledQuery = compiledQuery;
+		return sql(compiledQuery.getSql(), args);
+	}
+
+	/**
+	 * Open a cursor over the results. The caller must close the iterator.
+	 */
+	<T> ResultIterator<T> iterator(Class<T> clazz, boolean streaming) {
+
 		Connection con = null;
 		PreparedStatement state = null;
+		boolean restoreAutoCommit = false;
+		QueryTimer timer = null;
 
 		try {
 			if (sql == null) {
 				sql = sqlMaker.getSelectSql(this, clazz);
 			}
+			if (transaction != null) {
+				transaction.flush();
+			}
+			timer = startTimer(sql, clazz);
 
 			Connection localCon;
 			if (transaction == null) {
 				localCon = db.getConnection();
-				con = localCon; // con gets closed below if non-null
+				con = localCon; // con gets closed by the iterator if non-null
+				if (timer != null) {
+					timer.connectionAcquired();
+				}
 			} else {
 				localCon = transaction.getConnection();
 			}
 
-			state = localCon.prepareStatement(sql);
-			loadArgs(state);
+			ExpandedSql bound = expand(sql, args);
+			state = prepare(localCon, bound.sql, false);
+			if (timer != null) {
+				timer.prepared();
+			}
+			if (streaming) {
+				boolean autoCommit = localCon.getAutoCommit();
+				sqlMaker.configureCursor(localCon, state, fetchSize);
+				restoreAutoCommit = con != null && autoCommit && !localCon.getAutoCommit();
+			} else if (fetchSize != null) {
+				state.setFetchSize(fetchSize);
+			}
+			if (maxRows != null) {
+				state.setMaxRows(maxRows);
+			}
+			loadArgs(state, bound.args);
 
 			debug(state);
 
 			ResultSet rs = state.executeQuery();
+			if (timer != null) {
+				timer.executed();
+			}
 
-			meta = rs.getMetaData();
-			int colCount = meta.getColumnCount();
-
-			if (Util.isPrimitiveOrString(clazz) || clazz.getPackage().getName().startsWith("java.sql")) {
-				// if the receiver class is a primitive or jdbc type just grab the first column and assign it
-				while (rs.next()) {
-					Object colValue = rs.getObject(1);
-					if (colValue != null)
-						colValue = sqlMaker.convertValue(rs.getObject(1), meta.getColumnTypeName(1));
-
-					out.add((T) colValue);
-				}
-
-			} else {
-				PojoInfo pojoInfo = sqlMaker.getPojoInfo(clazz);
-				while (rs.next()) {
-					T row = clazz.newInstance();
-
-					for (int i = 1; i <= colCount; i++) {
-						String colName = meta.getColumnLabel(i);
-						Object colValue = rs.getObject(i);
-						if (colValue != null)
-							colValue = sqlMaker.convertValue(rs.getObject(i), meta.getColumnTypeName(i));
+			ResultIterator<T> it = new ResultIterator<T>(this, clazz, con, transaction, restoreAutoCommit,
+					state, rs, timer);
+			meta = it.getMetaData();
+			return it;
 
-						pojoInfo.putValue(row, colName, colValue, true);
-					}
-					out.add(row);
-				}
+		} catch (SQLException | IllegalArgumentException e) {
+			if (timer != null) {
+				timer.failed(e);
 			}
-
-		} catch (InstantiationException | IllegalAccessException | SQLException e) {
+			release(state);
+			close(con);
 			DbException dbe = new DbException(e);
 			dbe.setSql(sql);
 			throw dbe;
-		} finally {
- 			close(state);
+		} catch (DbException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
+			release(state);
 			close(con);
+			throw e;
 		}
+	}
 
-		return out;
+	/**
+	 * Called for each row a query maps. If dirty checking is on, remember the
+	 * row's values so that a later update() can write only what changed.
+	 */
+	void rowLoaded(Object row) {
+		Snapshots snapshots = db.getSnapshots();
+		if (snapshots != null && row != null && !(row instanceof Map)) {
+			if (sqlMaker.getPojoInfo(row.getClass()).getPrimaryKeyName() != null) {
+				snapshot(snapshots, row, sqlMaker.getUpdateArgs(this, row));
+			}
+		}
+	}
+
+	/**
+	 * Remember the row's update values once they are known to be in the
+	 * database: now, or when the transaction commits. If the transaction rolls
+	 * back, the row's snapshot is dropped instead, so its next update writes
+	 * every column.
+	 */
+	private void snapshot(Snapshots snapshots, Object row, Object[] values) {
+		// copy now, in case the row changes before the commit
+		Object[] copy = Snapshots.copy(values);
+		db.afterWrite(transaction, () -> snapshots.put(row, copy));
+		if (transaction != null) {
+			transaction.onRollback(() -> snapshots.remove(row));
+		}
+	}
+
+	/**
+	 * Returns the mapper for rows of this class, reusing the one captured by the
+	 * compiled query this query came from, if any.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> RowMapper<T> getRowMapper(Class<T> clazz, ResultSetMetaData meta) throws SQLException {
+		if (compiledQuery != null && compiledQuery.getRowClass() == clazz) {
+			return ((CompiledQuery<T>) compiledQuery).getRowMapper(meta);
+		}
+		return sqlMaker.getRowMapper(clazz, meta);
+	}
+
+	/**
+	 * Start timing a statement, or return null if no QueryListener is
+	 * registered.
+	 */
+	private QueryTimer startTimer(String sql, Class<?> rowClass) {
+		QueryListener listener = db.getQueryListener();
+		if (listener == null) {
+			return null;
+		}
+		Object[] eventArgs = argBinder == null ? args : null;
+		return new QueryTimer(listener, new QueryEvent(sql, getTableName(rowClass), rowClass, eventArgs));
+	}
+
+	private String getTableName(Class<?> rowClass) {
+		if (table != null) {
+			return table;
+		}
+		if (rowClass == null) {
+			return pojoInfo == null ? null : pojoInfo.getTable();
+		}
+		if (Map.class.isAssignableFrom(rowClass) || Util.isPrimitiveOrString(rowClass)) {
+			return null;
+		}
+		return sqlMaker.getPojoInfo(rowClass).getTable();
 	}
 
-	private void loadArgs(PreparedStatement state) throws SQLException {
+	/**
+	 * Returns the sql and args to send to the driver. A compiled query's sql
+	 * was scanned for placeholders when it was compiled.
+	 */
+	private ExpandedSql expand(String sql, Object[] args) {
+		if (compiledQuery != null && compiledQuery.getSql().equals(sql)) {
+			return compiledQuery.expand(args);
+		}
+		return ExpandedSql.of(sql, args);
+	}
+
+	private void loadArgs(PreparedStatement state, Object[] args) throws SQLException {
 		if (args != null) {
 			for (int i = 0; i < args.length; i++) {
-				state.setObject(i + 1, args[i]);
+				if (args[i] instanceof SqlArray) {
+					SqlArray array = (SqlArray) args[i];
+					state.setArray(i + 1, state.getConnection().createArrayOf(array.typeName, array.elements));
+				} else {
+					state.setObject(i + 1, args[i]);
+				}
 			}
 		}
 	}
 
 	private void close(AutoCloseable ac) {
-		if (ac == null) {
+		Util.closeQuietly(ac);
+	}
+
+	private PreparedStatement prepare(Connection con, boolean returnGeneratedKeys) throws SQLException {
+		return prepare(con, sql, returnGeneratedKeys);
+	}
+
+	/**
+	 * Prepare a statement for the given sql. Inside a transaction, this may
+	 * reuse a statement from the transaction's cache. Give the statement back
+	 * with release().
+	 */
+	private PreparedStatement prepare(Connection con, String sql, boolean returnGeneratedKeys) throws SQLException {
+		if (cancelled) {
+			throw new DbException("Query was cancelled");
+		}
+		PreparedStatement state;
+		if (transaction != null) {
+			state = transaction.prepareStatement(sql, returnGeneratedKeys);
+		} else if (returnGeneratedKeys) {
+			state = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+		} else {
+			state = con.prepareStatement(sql);
+		}
+		currentStatement = state;
+		return state;
+	}
+
+	/**
+	 * Give back a statement from prepare(). Package-private so ResultIterator
+	 * can release the statement of an open cursor.
+	 */
+	void release(PreparedStatement state) {
+		if (state == null) {
 			return;
 		}
-		try {
-			ac.close();
-		} catch (Exception e) {
-			// bury it
+		synchronized (cancelLock) {
+			if (currentStatement == state) {
+				currentStatement = null;
+			}
+		}
+		if (transaction != null) {
+			transaction.releaseStatement(state);
+		} else {
+			close(state);
 		}
 	}
 
@@ -344,13 +929,18 @@ public class Query {
 	 * specify the table, or you can specify the table with the .table() method.
 	 */
 	public Query insert(Object row) {
+		if (defer(UnitOfWork.Op.INSERT, Collections.singletonList(row))) {
+			return this;
+		}
 
 		getGeneratedKeyReceiver(row);
 
 		sql = sqlMaker.getInsertSql(this, row);
-		args = sqlMaker.getInsertArgs(this, row);
+		argBinder = state -> sqlMaker.bindInsertArgs(this, row, state);
+		argRowClass = row.getClass();
 
 		execute();
+		db.rowsWritten(transaction, table, Collections.singletonList(row));
 
 		return this;
 	}
@@ -359,13 +949,18 @@ public class Query {
 	 * Upsert a row into a table. See http://en.wikipedia.org/wiki/Merge_%28SQL%29
 	 */
 	public Query upsert(Object row) {
+		if (defer(UnitOfWork.Op.UPSERT, Collections.singletonList(row))) {
+			return this;
+		}
 
 		getGeneratedKeyReceiver(row);
 
 		sql = sqlMaker.getUpsertSql(this, row);
-		args = sqlMaker.getUpsertArgs(this, row);
+		argBinder = state -> sqlMaker.bindUpsertArgs(this, row, state);
+		argRowClass = row.getClass();
 
 		execute();
+		db.rowsWritten(transaction, table, Collections.singletonList(row));
 
 		return this;
 	}
@@ -386,16 +981,448 @@ public class Query {
 	 * key.
 	 */
 	public Query update(Object row) {
+		if (defer(UnitOfWork.Op.UPDATE, Collections.singletonList(row))) {
+			return this;
+		}
 
-		sql = sqlMaker.getUpdateSql(this, row);
-		args = sqlMaker.getUpdateArgs(this, row);
+		Snapshots snapshots = db.getSnapshots();
+		Object[] values = null;
+		Object[] before = null;
+		if (snapshots != null) {
+			values = sqlMaker.getUpdateArgs(this, row);
+			before = snapshots.get(row);
+		}
+
+		if (before != null && before.length == values.length) {
+			BitSet changed = Snapshots.diff(before, values);
+			if (changed.isEmpty()) {
+				// nothing to write
+				rowsAffected = 0;
+				return this;
+			}
+			sql = sqlMaker.getPartialUpdateSql(this, row, changed);
+			argBinder = state -> sqlMaker.bindPartialUpdateArgs(this, row, changed, state);
+			argRowClass = row.getClass();
+		} else {
+			sql = sqlMaker.getUpdateSql(this, row);
+			argBinder = state -> sqlMaker.bindUpdateArgs(this, row, state);
+			argRowClass = row.getClass();
+		}
 
 		if (execute().getRowsAffected() <= 0) {
 			throw new DbException("Row not updated because the primary key was not found");
 		}
+		if (snapshots != null) {
+			snapshot(snapshots, row, values);
+		}
+		db.rowsWritten(transaction, table, Collections.singletonList(row));
+		return this;
+	}
+
+	/**
+	 * Insert a collection of rows using JDBC batches, reusing one prepared
+	 * statement for each class of row. If the sql maker supports multi-row
+	 * inserts, many rows are sent in each statement instead. Generated keys are
+	 * put back into every row if the driver supports it. If the query is not
+	 * part of a transaction, all the rows are inserted in a single transaction.
+	 * See .batchSize(). .getRowsAffected() returns the total.
+	 */
+	public Query insertAll(Collection<?> rows) {
+		rowsAffected = 0;
+		if (defer(UnitOfWork.Op.INSERT, rows)) {
+			return this;
+		}
+		writeGroups(rows, group -> {
+			Object first = group.get(0);
+			sql = sqlMaker.getInsertSql(this, first);
+
+			String[] keyNames = null;
+			Property prop = sqlMaker.getPojoInfo(first.getClass()).getGeneratedColumnProperty();
+			if (prop != null) {
+				keyNames = new String[] { prop.name };
+			}
+
+			if (sqlMaker.getMultiRowLimit(first.getClass()) > 1) {
+				executeMultiRow(group, false, keyNames);
+			} else {
+				executeBatch(group, (row, state) -> sqlMaker.bindInsertArgs(this, row, state), keyNames, false);
+			}
+			db.rowsWritten(transaction, table, group);
+		});
+		return this;
+	}
+
+	/**
+	 * Update a collection of rows using JDBC batches. Throws an exception, and
+	 * rolls back if the query is not part of a transaction, if any row's primary
+	 * key is not found. If the query is not part of a transaction, all the rows
+	 * are updated in a single transaction.
+	 */
+	public Query updateAll(Collection<?> rows) {
+		rowsAffected = 0;
+		if (defer(UnitOfWork.Op.UPDATE, rows)) {
+			return this;
+		}
+		writeGroups(rows, group -> {
+			sql = sqlMaker.getUpdateSql(this, group.get(0));
+			executeBatch(group, (row, state) -> sqlMaker.bindUpdateArgs(this, row, state), null, true);
+			db.rowsWritten(transaction, table, group);
+		});
+		return this;
+	}
+
+	/**
+	 * Upsert a collection of rows using JDBC batches. Generated keys are not
+	 * returned, because drivers don't report them reliably for rows that were
+	 * updated rather than inserted. If the query is not part of a transaction,
+	 * all the rows are upserted in a single transaction.
+	 */
+	public Query upsertAll(Collection<?> rows) {
+		rowsAffected = 0;
+		if (defer(UnitOfWork.Op.UPSERT, rows)) {
+			return this;
+		}
+		writeGroups(rows, group -> {
+			Object first = group.get(0);
+			if (sqlMaker.getMultiRowLimit(first.getClass()) > 1
+					&& sqlMaker.getMultiRowUpsertSql(this, first, 1) != null) {
+				executeMultiRow(lastByKey(group), true, null);
+			} else {
+				sql = sqlMaker.getUpsertSql(this, first);
+				executeBatch(group, (row, state) -> sqlMaker.bindUpsertArgs(this, row, state), null, false);
+			}
+			db.rowsWritten(transaction, table, group);
+		});
 		return this;
 	}
 
+	/**
+	 * Returns the rows with only the last of any that share a primary key.
+	 * Postgres won't let one "on conflict do update" statement touch the same
+	 * row twice, which a batch of single-row upserts allows.
+	 */
+	private List<?> lastByKey(List<?> rows) {
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(rows.get(0).getClass());
+		String key = pojoInfo.getPrimaryKeyName();
+		if (key == null) {
+			return rows;
+		}
+		Map<Object, Object> byKey = new LinkedHashMap<>();
+		for (Object row : rows) {
+			byKey.put(EntityCache.normalizeKey(pojoInfo.getValue(row, key)), row);
+		}
+		return byKey.size() == rows.size() ? rows : new ArrayList<>(byKey.values());
+	}
+
+	/**
+	 * Delete a collection of rows by primary key using JDBC batches. If the
+	 * query is not part of a transaction, all the rows are deleted in a single
+	 * transaction.
+	 */
+	public Query deleteAll(Collection<?> rows) {
+		rowsAffected = 0;
+		if (defer(UnitOfWork.Op.DELETE, rows)) {
+			return this;
+		}
+		writeGroups(rows, group -> {
+			sql = sqlMaker.getDeleteSql(this, group.get(0));
+			executeBatch(group, (row, state) -> sqlMaker.bindDeleteArgs(this, row, state), null, false);
+			db.rowsWritten(transaction, table, group);
+		});
+		return this;
+	}
+
+	/**
+	 * Set the number of rows sent to the database in each JDBC batch by
+	 * .insertAll(), .updateAll(), etc. Defaults to Database.getBatchSize().
+	 */
+	public Query batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * If this query is part of a transaction in unit-of-work mode, hand the
+	 * write to it to run later, and return true.
+	 */
+	private boolean defer(UnitOfWork.Op op, Collection<?> rows) {
+		if (transaction == null) {
+			return false;
+		}
+		UnitOfWork unitOfWork = transaction.getDeferringUnitOfWork();
+		if (unitOfWork == null) {
+			return false;
+		}
+		unitOfWork.add(op, table, rows);
+		return true;
+	}
+
+	/**
+	 * Write each group of rows of the same class. If the query is not part of a
+	 * transaction and there is more than one group, the groups share one that
+	 * is rolled back if any of them fails, so that either all the rows are
+	 * written or none are.
+	 */
+	private void writeGroups(Collection<?> rows, Consumer<List<?>> write) {
+		List<List<?>> groups = groupByClass(rows);
+		if (transaction != null || groups.size() < 2) {
+			groups.forEach(write);
+			return;
+		}
+		Transaction trans = db.startTransaction();
+		transaction = trans;
+		try {
+			groups.forEach(write);
+		} catch (RuntimeException e) {
+			transaction = null;
+			try {
+				trans.rollback();
+			} catch (DbException e1) {
+				// bury it, we're throwing the original
+			}
+			throw e;
+		}
+		transaction = null;
+		trans.commit();
+	}
+
+	private List<List<?>> groupByClass(Collection<?> rows) {
+		Map<Class<?>, List<Object>> groups = new LinkedHashMap<>();
+		for (Object row : rows) {
+			groups.computeIfAbsent(row.getClass(), c -> new ArrayList<>()).add(row);
+		}
+		return new ArrayList<List<?>>(groups.values());
+	}
+
+	private int getEffectiveBatchSize() {
+		int size = batchSize != null ? batchSize : db.getBatchSize();
+		return size <= 0 ? Integer.MAX_VALUE : size;
+	}
+
+	private void executeBatch(List<?> rows, RowBinder binder, String[] generatedKeyNames, boolean mustAffectRows) {
+
+		int size = getEffectiveBatchSize();
+		QueryTimer timer = startTimer(sql, rows.get(0).getClass());
+
+		runAsUnit(timer, con -> {
+
+			String[] keyNames = generatedKeyNames;
+			if (keyNames != null && !con.getMetaData().supportsGetGeneratedKeys()) {
+				keyNames = null;
+			}
+
+			PreparedStatement state = null;
+			try {
+				if (keyNames != null) {
+					state = prepare(con, true);
+				} else {
+					state = prepare(con, false);
+				}
+				if (timer != null) {
+					timer.prepared();
+				}
+
+				List<Object> pending = new ArrayList<>(Math.min(size, rows.size()));
+				for (Object row : rows) {
+					binder.bind(row, state);
+					state.addBatch();
+					pending.add(row);
+					if (pending.size() >= size) {
+						flushBatch(state, pending, keyNames, mustAffectRows);
+					}
+				}
+				if (!pending.isEmpty()) {
+					flushBatch(state, pending, keyNames, mustAffectRows);
+				}
+				if (timer != null) {
+					timer.executed();
+				}
+			} finally {
+				release(state);
+			}
+		});
+	}
+
+	/**
+	 * Insert or upsert rows using statements that carry many rows each, like
+	 * "insert into t (a,b) values (?,?),(?,?),...". Rows are sent in chunks no
+	 * bigger than the sql maker's limit or the batch size. A trailing partial
+	 * chunk is broken into power-of-two sizes, so only a few distinct statements
+	 * are ever generated.
+	 */
+	private void executeMultiRow(List<?> rows, boolean upsert, String[] generatedKeyNames) {
+
+		Object first = rows.get(0);
+		int limit = Math.min(sqlMaker.getMultiRowLimit(first.getClass()), getEffectiveBatchSize());
+		int[] chunks = getChunkSizes(rows.size(), limit);
+
+		// reported under the sql for the first chunk; the fingerprint is the same for all
+		QueryTimer timer = startTimer(getMultiRowSql(upsert, first, chunks[0]), first.getClass());
+
+		runAsUnit(timer, con -> {
+
+			String[] keyNames = generatedKeyNames;
+			if (keyNames != null && !con.getMetaData().supportsGetGeneratedKeys()) {
+				keyNames = null;
+			}
+
+			PreparedStatement state = null;
+			int stateRowCount = 0;
+			try {
+				int pos = 0;
+				for (int chunk : chunks) {
+					if (chunk != stateRowCount) {
+						release(state);
+						state = null;
+						sql = getMultiRowSql(upsert, first, chunk);
+						if (keyNames != null) {
+							state = prepare(con, true);
+						} else {
+							state = prepare(con, false);
+						}
+						if (timer != null && stateRowCount == 0) {
+							timer.prepared();
+						}
+						stateRowCount = chunk;
+					}
+
+					List<?> chunkRows = rows.subList(pos, pos + chunk);
+					if (upsert) {
+						sqlMaker.bindMultiRowUpsertArgs(this, chunkRows, state);
+					} else {
+						sqlMaker.bindMultiRowInsertArgs(this, chunkRows, state);
+					}
+
+					debug(state);
+
+					rowsAffected += state.executeUpdate();
+					if (keyNames != null) {
+						populateGeneratedKeys(state, chunkRows, keyNames);
+					}
+					pos += chunk;
+				}
+				if (timer != null) {
+					timer.executed();
+				}
+			} finally {
+				release(state);
+			}
+		});
+	}
+
+	private String getMultiRowSql(boolean upsert, Object first, int rowCount) {
+		return upsert ? sqlMaker.getMultiRowUpsertSql(this, first, rowCount)
+				: sqlMaker.getMultiRowInsertSql(this, first, rowCount);
+	}
+
+	/**
+	 * Split count rows into chunks of size limit, then break what's left into
+	 * descending powers of two.
+	 */
+	static int[] getChunkSizes(int count, int limit) {
+		int full = count / limit;
+		int rem = count % limit;
+		int[] out = new int[full + Integer.bitCount(rem)];
+		int i = 0;
+		for (; i < full; i++) {
+			out[i] = limit;
+		}
+		for (int bit = Integer.highestOneBit(rem); bit > 0; bit >>>= 1) {
+			if ((rem & bit) != 0) {
+				out[i++] = bit;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Run some work that may issue several statements. If the query is not part
+	 * of a transaction, the work gets its own connection and runs as a single
+	 * transaction that is rolled back on failure. The timer, if not null, is
+	 * told about the connection and the outcome; the work reports the rest.
+	 */
+	private void runAsUnit(QueryTimer timer, ConnectionWork work) {
+
+		Connection con = null;
+		boolean restoreAutoCommit = false;
+		int rowsBefore = rowsAffected;
+
+		try {
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+				if (timer != null) {
+					timer.connectionAcquired();
+				}
+
+				if (localCon.getAutoCommit()) {
+					localCon.setAutoCommit(false);
+					restoreAutoCommit = true;
+				}
+			} else {
+				localCon = transaction.getConnection();
+			}
+
+			work.run(localCon);
+
+			if (restoreAutoCommit) {
+				localCon.commit();
+			}
+			if (timer != null) {
+				timer.completed(rowsAffected - rowsBefore);
+			}
+
+		} catch (SQLException | IllegalArgumentException | DbException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
+			if (restoreAutoCommit) {
+				try {
+					con.rollback();
+				} catch (SQLException e1) {
+					// bury it, we're throwing the original
+				}
+			}
+			DbException dbe = e instanceof DbException ? (DbException) e : new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			if (restoreAutoCommit) {
+				try {
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// bury it, the pool resets the connection anyway
+				}
+			}
+			close(con);
+		}
+	}
+
+	private void flushBatch(PreparedStatement state, List<Object> pending, String[] generatedKeyNames,
+			boolean mustAffectRows) throws SQLException {
+
+		debug(state);
+
+		int[] counts = state.executeBatch();
+		for (int count : counts) {
+			if (count == Statement.SUCCESS_NO_INFO) {
+				// the driver doesn't say how many, so count it as one
+				rowsAffected++;
+			} else if (count > 0) {
+				rowsAffected += count;
+			} else if (mustAffectRows) {
+				throw new DbException("Row not updated because the primary key was not found");
+			}
+		}
+
+		if (generatedKeyNames != null) {
+			populateGeneratedKeys(state, pending, generatedKeyNames);
+		}
+		pending.clear();
+	}
+
 	/**
 	 * Execute a sql command that does not return a result set. The sql should
 	 * previously have been set with the sql(String) method. Returns this Query
@@ -403,8 +1430,13 @@ public class Query {
 	 */
 	public Query execute() {
 
+		if (transaction != null && argBinder == null) {
+			transaction.flush();
+		}
+
 		Connection con = null;
 		PreparedStatement state = null;
+		QueryTimer timer = startTimer(sql, argRowClass);
 
 		try {
 
@@ -412,67 +1444,90 @@ public class Query {
 			if (transaction == null) {
 				localCon = db.getConnection();
 				con = localCon; // con gets closed below if non-null
+				if (timer != null) {
+					timer.connectionAcquired();
+				}
 			} else {
 				localCon = transaction.getConnection();
 			}
 
+			/*
+			 * ExpandedSql turns List args into arrays, so they can be inserted into
+			 * JDBC array fields. Postgres JDBC drivers do not handle Lists correctly.
+			 */
+			ExpandedSql bound = argBinder == null ? expand(sql, args) : null;
+			String boundSql = bound == null ? sql : bound.sql;
+
 			// see notes on generatedKeyReceiver()
 			if (generatedKeyReceiver != null) {
-				state = localCon.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+				state = prepare(localCon, boundSql, true);
 			} else {
-				state = localCon.prepareStatement(sql);
+				state = prepare(localCon, boundSql, false);
 			}
 
-			if (args != null) {
-				for (int i = 0; i < args.length; i++) {
-					Object arg = args[i];
-
-					/*
-					 * The purpose of this is to allow List args to be inserted into JDBC array
-					 * fields. Postgres JDBC drivers do not handle this correctly.
-					 */
-					if (arg != null && List.class.isAssignableFrom(arg.getClass())) {
-						arg = ((List<?>) arg).toArray();
-					}
-
-					state.setObject(i + 1, arg);
-				}
+			if (argBinder != null) {
+				argBinder.bind(state);
+			} else {
+				loadArgs(state, bound.args);
+			}
+			if (timer != null) {
+				timer.prepared();
 			}
 
 			debug(state);
 
 			rowsAffected = state.executeUpdate();
+			if (timer != null) {
+				timer.executed();
+			}
 
 			if (generatedKeyReceiver != null) {
 				populateGeneratedKeys(state, generatedKeyReceiver, generatedKeyNames);
 			}
+			if (timer != null) {
+				timer.completed(rowsAffected);
+			}
 
 		} catch (SQLException | IllegalArgumentException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
 			DbException dbe = new DbException(e);
 			dbe.setSql(sql);
 			throw dbe;
+		} catch (DbException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
+			throw e;
 		} finally {
-			close(state);
+			release(state);
 			close(con);
 		}
 
+		if (argBinder == null) {
+			// straight sql; if no table was given, it could have written to any table
+			db.tableWritten(transaction, table);
+		}
+
 		return this;
 	}
 
-	@SuppressWarnings("unchecked")
 	private void populateGeneratedKeys(PreparedStatement state, Object generatedKeyReceiver,
 			String[] generatedKeyNames) {
+		populateGeneratedKeys(state, Collections.singletonList(generatedKeyReceiver), generatedKeyNames);
+	}
+
+	/**
+	 * Put the generated keys into the receivers, one row of keys per receiver, in
+	 * order. Used for both single statements and batches.
+	 */
+	private void populateGeneratedKeys(PreparedStatement state, List<?> generatedKeyReceivers,
+			String[] generatedKeyNames) {
 
 		ResultSet rs = null;
 
 		try {
-			boolean isMap = Map.class.isAssignableFrom(generatedKeyReceiver.getClass());
-
-			PojoInfo pojoInfo = null;
-			if (!isMap) {
-				pojoInfo = sqlMaker.getPojoInfo(generatedKeyReceiver.getClass());
-			}
-
 			/*-
 			 * JDBC drivers are inconsistent in the way they handle generated keys.
 			 * MySQL returns a single column named "GENERATED_KEY". The column has the incorrect name, obviously.
@@ -486,47 +1541,11 @@ public class Query {
 			ResultSetMetaData meta = rs.getMetaData();
 			int colCount = meta.getColumnCount();
 
-			if (rs.next()) {
-				if (isMap) {
-					Map<String, Object> map = (Map<String, Object>) generatedKeyReceiver;
-					if (colCount == 1) {
-						map.put(generatedKeyNames[0], rs.getObject(1));
-					} else {
-						for (String generatedKeyName : generatedKeyNames) {
-							map.put(generatedKeyName, rs.getObject(generatedKeyName));
-						}
-					}
-
-				} else {
-
-					for (String generatedKeyName : generatedKeyNames) {
-						Property prop = pojoInfo.getProperty(generatedKeyName);
-						if (prop == null) {
-							throw new DbException("Generated key name not found: " + generatedKeyName);
-						}
-
-						// is it an int or a long?
-						boolean isInt = prop.dataType.isAssignableFrom(int.class)
-								|| prop.dataType.isAssignableFrom(Integer.class);
-
-						Object newKey;
-						if (colCount == 1) {
-							if (isInt) {
-								newKey = rs.getInt(1);
-							} else {
-								newKey = rs.getLong(1);
-							}
-						} else {
-							// colcount > 1, must do by name
-							if (isInt) {
-								newKey = rs.getInt(prop.name);
-							} else {
-								newKey = rs.getLong(prop.name);
-							}
-						}
-						pojoInfo.putValue(generatedKeyReceiver, prop.name, newKey);
-					}
+			for (Object generatedKeyReceiver : generatedKeyReceivers) {
+				if (!rs.next()) {
+					break;
 				}
+				putGeneratedKeys(rs, colCount, generatedKeyReceiver, generatedKeyNames);
 			}
 
 		} catch (SQLException | SecurityException | IllegalArgumentException e) {
@@ -543,6 +1562,53 @@ public class Query {
 
 	}
 
+	@SuppressWarnings("unchecked")
+	private void putGeneratedKeys(ResultSet rs, int colCount, Object generatedKeyReceiver,
+			String[] generatedKeyNames) throws SQLException {
+
+		if (Map.class.isAssignableFrom(generatedKeyReceiver.getClass())) {
+			Map<String, Object> map = (Map<String, Object>) generatedKeyReceiver;
+			if (colCount == 1) {
+				map.put(generatedKeyNames[0], rs.getObject(1));
+			} else {
+				for (String generatedKeyName : generatedKeyNames) {
+					map.put(generatedKeyName, rs.getObject(generatedKeyName));
+				}
+			}
+			return;
+		}
+
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(generatedKeyReceiver.getClass());
+
+		for (String generatedKeyName : generatedKeyNames) {
+			Property prop = pojoInfo.getProperty(generatedKeyName);
+			if (prop == null) {
+				throw new DbException("Generated key name not found: " + generatedKeyName);
+			}
+
+			// is it an int or a long?
+			boolean isInt = prop.dataType.isAssignableFrom(int.class)
+					|| prop.dataType.isAssignableFrom(Integer.class);
+
+			Object newKey;
+			if (colCount == 1) {
+				if (isInt) {
+					newKey = rs.getInt(1);
+				} else {
+					newKey = rs.getLong(1);
+				}
+			} else {
+				// colcount > 1, must do by name
+				if (isInt) {
+					newKey = rs.getInt(prop.name);
+				} else {
+					newKey = rs.getLong(prop.name);
+				}
+			}
+			pojoInfo.putValue(generatedKeyReceiver, prop.name, newKey);
+		}
+	}
+
 	/**
 	 * Specify the object and its fields that should receive any column values that
 	 * the database server generates during an insert or update. If a column is
@@ -595,11 +1661,16 @@ public class Query {
 	 * which table to hit.
 	 */
 	public Query delete(Object row) {
+		if (defer(UnitOfWork.Op.DELETE, Collections.singletonList(row))) {
+			return this;
+		}
 
 		sql = sqlMaker.getDeleteSql(this, row);
-		args = sqlMaker.getDeleteArgs(this, row);
+		argBinder = state -> sqlMaker.bindDeleteArgs(this, row, state);
+		argRowClass = row.getClass();
 
 		execute();
+		db.rowsWritten(transaction, table, Collections.singletonList(row));
 		return this;
 	}
 
@@ -669,6 +1740,14 @@ public class Query {
 	public String getTable() {
 		return table;
 	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public Integer getFetchSize() {
+		return fetchSize;
+	}
 	
 	public ResultSetMetaData getResultSetMetaData() {
 		return meta;
@@ -682,6 +1761,18 @@ public class Query {
 		this.pojoInfo = pojoInfo;
 	}
 
+	private interface ArgBinder {
+		void bind(PreparedStatement state) throws SQLException;
+	}
+
+	private interface RowBinder {
+		void bind(Object row, PreparedStatement state) throws SQLException;
+	}
+
+	private interface ConnectionWork {
+		void run(Connection con) throws SQLException;
+	}
+
 	private void debug(PreparedStatement state) {
 		if (false)
 			System.out.println(state);
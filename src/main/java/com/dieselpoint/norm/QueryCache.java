@@ -0,0 +1,245 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of query results, used by queries
+ * marked with Query.cached(). Entries are keyed by sql, args and row class,
+ * and expire after the time to live given to cached().
+ * <p>
+ * Each entry remembers the tables it was read from. When norm writes to a
+ * table, every entry that read from it is dropped. This is done by keeping a
+ * version number for each table: a write bumps the version, and an entry whose
+ * versions are out of date is treated as a miss. Straight sql executed with
+ * .execute() and no .table() could have written anything, so it drops every
+ * entry.
+ * </p>
+ * <p>
+ * Hits share the cached row objects. Treat them as read-only.
+ * </p>
+ */
+public class QueryCache {
+
+	private int maxSize;
+
+	private final LinkedHashMap<Key, CacheEntry> entries;
+	private final Map<String, Long> tableVersions = new HashMap<>();
+	private long globalVersion;
+	private boolean used;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	QueryCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest) {
+				if (size() > QueryCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public synchronized CacheStats getStats() {
+		long now = System.nanoTime();
+		for (Iterator<CacheEntry> it = entries.values().iterator(); it.hasNext();) {
+			CacheEntry entry = it.next();
+			if (!isCurrent(entry, now)) {
+				it.remove();
+				if (isExpired(entry, now)) {
+					evictions++;
+				}
+			}
+		}
+		return new CacheStats(hits, misses, evictions, entries.size());
+	}
+
+	/**
+	 * Drop every entry.
+	 */
+	public synchronized void clear() {
+		globalVersion++;
+		entries.clear();
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		Iterator<Key> it = entries.keySet().iterator();
+		while (entries.size() > maxSize && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Returns true if no query has ever been cached, so there is nothing to
+	 * invalidate.
+	 */
+	synchronized boolean isEmpty() {
+		return !used;
+	}
+
+	/**
+	 * Returns the cached rows, or null if there are none or they are out of
+	 * date.
+	 */
+	synchronized List<?> get(Key key) {
+		CacheEntry entry = entries.get(key);
+		long now = System.nanoTime();
+		if (entry != null && !isCurrent(entry, now)) {
+			entries.remove(key);
+			if (isExpired(entry, now)) {
+				evictions++;
+			}
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.rows;
+	}
+
+	/**
+	 * Returns the current versions of these tables. Read them before running
+	 * the query and pass them to put(), so that a write that happens while the
+	 * query runs makes the entry out of date.
+	 */
+	synchronized long[] getVersions(List<String> tables) {
+		used = true;
+		long[] versions = new long[tables.size() + 1];
+		versions[0] = globalVersion;
+		for (int i = 0; i < tables.size(); i++) {
+			versions[i + 1] = tableVersions.getOrDefault(tables.get(i), 0L);
+		}
+		return versions;
+	}
+
+	synchronized void put(Key key, List<String> tables, long[] versions, List<?> rows, long ttlNanos) {
+		if (maxSize <= 0) {
+			return;
+		}
+		entries.put(key, new CacheEntry(Collections.unmodifiableList(new ArrayList<>(rows)), tables, versions,
+				System.nanoTime() + ttlNanos));
+	}
+
+	/**
+	 * Make every entry that read from this table out of date. A null table makes
+	 * every entry out of date.
+	 */
+	synchronized void invalidateTable(String table) {
+		if (table == null) {
+			clear();
+		} else {
+			tableVersions.merge(normalizeTable(table), 1L, Long::sum);
+		}
+	}
+
+	private boolean isExpired(CacheEntry entry, long now) {
+		return now - entry.expiresAt > 0;
+	}
+
+	private boolean isCurrent(CacheEntry entry, long now) {
+		if (isExpired(entry, now)) {
+			return false;
+		}
+		if (entry.versions[0] != globalVersion) {
+			return false;
+		}
+		for (int i = 0; i < entry.tables.size(); i++) {
+			if (entry.versions[i + 1] != tableVersions.getOrDefault(entry.tables.get(i), 0L)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static String normalizeTable(String table) {
+		return table.toLowerCase(Locale.ROOT);
+	}
+
+	static List<String> normalizeTables(Collection<String> tables) {
+		List<String> out = new ArrayList<>();
+		for (String table : tables) {
+			String normalized = normalizeTable(table);
+			if (!out.contains(normalized)) {
+				out.add(normalized);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Identifies a cached result. maxRows is the cap the driver was given, or 0
+	 * for none, so that a list cut short by first() or one() isn't served as
+	 * the full results.
+	 */
+	static class Key {
+		private final String sql;
+		private final Object[] args;
+		private final Class<?> rowClass;
+		private final int maxRows;
+		private final int hash;
+
+		Key(String sql, Object[] args, Class<?> rowClass, int maxRows) {
+			this.sql = sql;
+			this.args = args == null ? new Object[0] : args.clone();
+			this.rowClass = rowClass;
+			this.maxRows = maxRows;
+			this.hash = ((sql.hashCode() * 31 + Arrays.deepHashCode(this.args)) * 31 + rowClass.hashCode()) * 31
+					+ maxRows;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && rowClass == other.rowClass && maxRows == other.maxRows
+					&& sql.equals(other.sql) && Arrays.deepEquals(args, other.args);
+		}
+	}
+
+	private static class CacheEntry {
+		final List<?> rows;
+		final List<String> tables;
+		final long[] versions;
+		final long expiresAt;
+
+		CacheEntry(List<?> rows, List<String> tables, long[] versions, long expiresAt) {
+			this.rows = rows;
+			this.tables = tables;
+			this.versions = versions;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
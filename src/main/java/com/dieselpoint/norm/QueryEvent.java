@@ -0,0 +1,160 @@
+package com.dieselpoint.norm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Describes a statement reported to a QueryListener.
+ */
+public final class QueryEvent {
+
+	private static final int MAX_CACHED_FINGERPRINTS = 10000;
+	private static final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+
+	private final String sql;
+	private final String table;
+	private final Class<?> rowClass;
+	private final Object[] args;
+	private String fingerprint;
+	private long connectionWaitNanos;
+
+	QueryEvent(String sql, String table, Class<?> rowClass, Object[] args) {
+		this.sql = sql;
+		this.table = table;
+		this.rowClass = rowClass;
+		this.args = args;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Returns the sql with literals replaced by ?, runs of whitespace made
+	 * single spaces, and lists of placeholders like "(?,?,?)" or
+	 * "(?,?),(?,?)" shortened to "(?)", so statements that differ only in
+	 * their values or the length of their lists have the same fingerprint.
+	 */
+	public String getFingerprint() {
+		if (fingerprint == null) {
+			fingerprint = fingerprint(sql);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the table the statement reads or writes, if norm knows it, or
+	 * null.
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the class of the rows read or written, or null if there isn't
+	 * one.
+	 */
+	public Class<?> getRowClass() {
+		return rowClass;
+	}
+
+	/**
+	 * Returns the args given to the query, before any "in (?)" expansion, or
+	 * null if there were none or the values were bound straight from a row.
+	 * Don't change them.
+	 */
+	public Object[] getArgs() {
+		return args;
+	}
+
+	/**
+	 * Returns the time it took to get a connection, or 0 if the statement was
+	 * part of a transaction or hasn't got one yet.
+	 */
+	public long getConnectionWaitNanos() {
+		return connectionWaitNanos;
+	}
+
+	void setConnectionWaitNanos(long connectionWaitNanos) {
+		this.connectionWaitNanos = connectionWaitNanos;
+	}
+
+	@Override
+	public String toString() {
+		return sql;
+	}
+
+	static String fingerprint(String sql) {
+		if (sql == null) {
+			return null;
+		}
+		String fingerprint = fingerprints.get(sql);
+		if (fingerprint == null) {
+			fingerprint = makeFingerprint(sql);
+			if (fingerprints.size() >= MAX_CACHED_FINGERPRINTS) {
+				fingerprints.clear();
+			}
+			fingerprints.put(sql, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	private static String makeFingerprint(String sql) {
+		StringBuilder out = new StringBuilder(sql.length());
+		int len = sql.length();
+		int i = 0;
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				// string literal, with '' as an escaped quote
+				i++;
+				while (i < len) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+				out.append('?');
+			} else if (c == '"' || c == '`') {
+				// quoted identifier, kept as is
+				int end = sql.indexOf(c, i + 1);
+				end = end < 0 ? len : end + 1;
+				out.append(sql, i, end);
+				i = end;
+			} else if (Character.isDigit(c) && (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))) {
+				while (i < len && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				out.append('?');
+			} else if (Character.isWhitespace(c)) {
+				while (i < len && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (out.length() > 0 && i < len) {
+					out.append(' ');
+				}
+			} else {
+				out.append(c);
+				i++;
+			}
+		}
+		return collapseLists(out.toString());
+	}
+
+	/**
+	 * Shorten "(?, ?, ?)" to "(?)" and then "(?), (?)" to "(?)".
+	 */
+	private static String collapseLists(String sql) {
+		if (sql.indexOf('?') < 0) {
+			return sql;
+		}
+		String collapsed = sql.replaceAll("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)", "(?)");
+		return collapsed.replaceAll("\\(\\?\\)(\\s*,\\s*\\(\\?\\))+", "(?)");
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.dieselpoint.norm;
+
+/**
+ * Receives timings for each statement norm runs. Register one with
+ * Database.addQueryListener(). Methods are called on the thread running the
+ * statement, so they should be quick, and they must not throw. All times are
+ * in nanoseconds.
+ * <p>
+ * For a query, the calls are connectionAcquired() (unless the query is part
+ * of a transaction), prepared(), executed(), firstRow() if there are any
+ * rows, and then completed() when the results have been read and closed. A
+ * batch of writes is reported as one statement. failed() takes the place of
+ * completed() if something goes wrong.
+ */
+public interface QueryListener {
+
+	/**
+	 * Called when a connection has been taken from the pool.
+	 * 
+	 * @param waitNanos how long it took to get it
+	 */
+	default void connectionAcquired(QueryEvent event, long waitNanos) {
+	}
+
+	default void prepared(QueryEvent event, long prepareNanos) {
+	}
+
+	/**
+	 * Called when the statement has run, which for a query means the driver has
+	 * returned a result set.
+	 */
+	default void executed(QueryEvent event, long executeNanos) {
+	}
+
+	/**
+	 * Called when the first row has been fetched.
+	 * 
+	 * @param firstRowNanos the time since executed()
+	 */
+	default void firstRow(QueryEvent event, long firstRowNanos) {
+	}
+
+	/**
+	 * Called when the statement is finished.
+	 * 
+	 * @param rows         rows returned by a query, or affected by a write
+	 * @param mappingNanos time spent turning rows into objects
+	 * @param totalNanos   time since the statement started, including waiting
+	 *                     for a connection
+	 */
+	default void completed(QueryEvent event, long rows, long mappingNanos, long totalNanos) {
+	}
+
+	default void failed(QueryEvent event, Throwable error, long totalNanos) {
+	}
+
+}
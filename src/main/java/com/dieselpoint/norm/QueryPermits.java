@@ -0,0 +1,63 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * Limits how many async queries and open publisher cursors there are at once,
+ * without blocking a thread while one waits. Work that asks for a permit when
+ * none is free goes in a queue, and is handed to the executor when a permit is
+ * released. Blocking instead would tie up executor threads that the holders of
+ * permits may need in order to give them back.
+ */
+class QueryPermits {
+
+	private final int maxPermits;
+	private final Deque<Runnable> waiting = new ArrayDeque<>();
+	private int inUse;
+
+	QueryPermits(int maxPermits) {
+		this.maxPermits = maxPermits;
+	}
+
+	/**
+	 * Run the task on the executor once a permit is free. The task then holds
+	 * the permit, and whoever ends up with it must give it back with release().
+	 */
+	void acquire(Executor executor, Runnable task) {
+		synchronized (this) {
+			if (inUse >= maxPermits) {
+				waiting.add(() -> executor.execute(task));
+				return;
+			}
+			inUse++;
+		}
+		try {
+			executor.execute(task);
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Give a permit back, or pass it straight on to the next task waiting for
+	 * one.
+	 */
+	void release() {
+		Runnable next;
+		synchronized (this) {
+			next = waiting.poll();
+			if (next == null) {
+				inUse--;
+				return;
+			}
+		}
+		next.run();
+	}
+
+	synchronized int availablePermits() {
+		return maxPermits - inUse;
+	}
+}
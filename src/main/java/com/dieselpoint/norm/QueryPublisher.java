@@ -0,0 +1,177 @@
+package com.dieselpoint.norm;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a query to subscribers as they ask for them. Each
+ * subscriber gets its own copy of the query and its own cursor, opened on the
+ * first request. An open cursor holds one of the database's in-flight
+ * permits, the same ones async queries take; a subscription that has to wait
+ * for one is parked, not left blocking an executor thread. Rows are read and
+ * mapped on the executor, and never more than the subscriber has requested. The statement and connection are released when the rows run
+ * out, the subscriber cancels, or something fails.
+ */
+class QueryPublisher<T> implements Flow.Publisher<T> {
+
+	private final Query query;
+	private final Class<T> clazz;
+	private final Executor executor;
+	private final QueryPermits permits;
+
+	QueryPublisher(Query query, Class<T> clazz, Executor executor) {
+		// later changes to the caller's query don't affect the publisher
+		this.query = query.copy();
+		this.clazz = clazz;
+		this.executor = executor;
+		this.permits = query.getDatabase().getInFlight();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber");
+		}
+		subscriber.onSubscribe(new RowSubscription(subscriber));
+	}
+
+	private class RowSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final Query subscriptionQuery = query.copy();
+		private final AtomicLong requested = new AtomicLong();
+
+		// number of times drain() has been asked to run; only one runs at a time
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean cancelled;
+		private volatile IllegalArgumentException badRequest;
+
+		// set when the permit asked for in emit() is handed over
+		private volatile boolean holdingPermit;
+
+		// only touched inside drain()
+		private ResultIterator<T> it;
+		private boolean waitingForPermit;
+		private boolean done;
+
+		RowSubscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				badRequest = new IllegalArgumentException("request must be positive, got " + n);
+			} else {
+				requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if (wip.getAndIncrement() == 0) {
+				executor.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			int missed = 1;
+			while (true) {
+				if (!done) {
+					emit();
+				} else {
+					// a permit handed over after the subscription ended
+					releasePermit();
+				}
+				missed = wip.addAndGet(-missed);
+				if (missed == 0) {
+					return;
+				}
+			}
+		}
+
+		private void emit() {
+			try {
+				if (cancelled) {
+					finish();
+					return;
+				}
+				if (badRequest != null) {
+					finish();
+					subscriber.onError(badRequest);
+					return;
+				}
+
+				long r = requested.get();
+				if (r == 0) {
+					return;
+				}
+				if (it == null) {
+					if (!holdingPermit) {
+						if (!waitingForPermit) {
+							waitingForPermit = true;
+							permits.acquire(executor, () -> {
+								holdingPermit = true;
+								schedule();
+							});
+						}
+						return;
+					}
+					it = subscriptionQuery.iterator(clazz, true);
+				}
+
+				long emitted = 0;
+				while (emitted != r) {
+					if (cancelled) {
+						finish();
+						return;
+					}
+					if (!it.hasNext()) {
+						finish();
+						subscriber.onComplete();
+						return;
+					}
+					subscriber.onNext(it.next());
+					emitted++;
+				}
+				if (r != Long.MAX_VALUE) {
+					requested.addAndGet(-emitted);
+				}
+
+			} catch (Throwable t) {
+				if (!done) {
+					finish();
+					subscriber.onError(t);
+				}
+			}
+		}
+
+		private void finish() {
+			done = true;
+			try {
+				if (it != null) {
+					it.close();
+					it = null;
+				}
+			} finally {
+				releasePermit();
+			}
+		}
+
+		private void releasePermit() {
+			if (holdingPermit) {
+				holdingPermit = false;
+				permits.release();
+			}
+		}
+	}
+
+}
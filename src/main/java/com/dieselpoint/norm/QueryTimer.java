@@ -0,0 +1,67 @@
+package com.dieselpoint.norm;
+
+/**
+ * Times one statement and reports to the database's QueryListener. Query
+ * only creates one when a listener is registered, so with none the cost is a
+ * null check at each step.
+ */
+final class QueryTimer {
+
+	private final QueryListener listener;
+	private final QueryEvent event;
+	private final long start;
+	private long mark;
+	private long mappingNanos;
+	private boolean done;
+
+	QueryTimer(QueryListener listener, QueryEvent event) {
+		this.listener = listener;
+		this.event = event;
+		this.start = System.nanoTime();
+		this.mark = start;
+	}
+
+	void connectionAcquired() {
+		long waitNanos = lap();
+		event.setConnectionWaitNanos(waitNanos);
+		listener.connectionAcquired(event, waitNanos);
+	}
+
+	void prepared() {
+		listener.prepared(event, lap());
+	}
+
+	void executed() {
+		listener.executed(event, lap());
+	}
+
+	void firstRow() {
+		listener.firstRow(event, lap());
+	}
+
+	void mapped(long nanos) {
+		mappingNanos += nanos;
+	}
+
+	void completed(long rows) {
+		if (!done) {
+			done = true;
+			listener.completed(event, rows, mappingNanos, System.nanoTime() - start);
+		}
+	}
+
+	void failed(Throwable error) {
+		if (!done) {
+			done = true;
+			listener.failed(event, error, System.nanoTime() - start);
+		}
+	}
+
+	private long lap() {
+		long now = System.nanoTime();
+		long elapsed = now - mark;
+		mark = now;
+		return elapsed;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.dieselpoint.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.dieselpoint.norm.sqlmakers.RowMapper;
+
+/**
+ * Walks an open ResultSet and maps each row as it is fetched, using the
+ * RowMapper compiled for the result shape. Holds the
+ * statement and, if the query was not part of a transaction, the connection,
+ * until close() is called.
+ */
+class ResultIterator<T> implements Iterator<T>, AutoCloseable {
+
+	private final Query query;
+	private final Connection con;
+	private final Transaction transaction;
+	private final boolean restoreAutoCommit;
+	private final PreparedStatement state;
+	private final ResultSet rs;
+	private final ResultSetMetaData meta;
+	private final RowMapper<T> mapper;
+	private final QueryTimer timer;
+	private long rows;
+
+	private boolean fetched;
+	private boolean hasNext;
+	private boolean closed;
+
+	/**
+	 * @param con               the connection to close when done, or null if it
+	 *                          belongs to a transaction
+	 * @param transaction       the transaction the statement belongs to, or null
+	 * @param restoreAutoCommit true if autocommit was turned off to open a cursor
+	 *                          and should be turned back on before closing
+	 * @param timer             times the rows and is told when they're done, or
+	 *                          null
+	 */
+	ResultIterator(Query query, Class<T> clazz, Connection con, Transaction transaction,
+			boolean restoreAutoCommit, PreparedStatement state, ResultSet rs, QueryTimer timer)
+			throws SQLException {
+		this.query = query;
+		this.con = con;
+		this.transaction = transaction;
+		this.restoreAutoCommit = restoreAutoCommit;
+		this.state = state;
+		this.rs = rs;
+		this.meta = rs.getMetaData();
+		this.mapper = query.getRowMapper(clazz, meta);
+		this.timer = timer;
+	}
+
+	ResultSetMetaData getMetaData() {
+		return meta;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		if (!fetched) {
+			try {
+				hasNext = rs.next();
+			} catch (SQLException e) {
+				throw fail(e);
+			}
+			fetched = true;
+			if (timer != null && hasNext && rows == 0) {
+				timer.firstRow();
+			}
+			if (!hasNext) {
+				close();
+			}
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fetched = false;
+		try {
+			T row;
+			if (timer != null) {
+				long start = System.nanoTime();
+				row = mapper.mapRow(rs);
+				timer.mapped(System.nanoTime() - start);
+			} else {
+				row = mapper.mapRow(rs);
+			}
+			rows++;
+			if (transaction != null) {
+				T resolved = transaction.resolve(row);
+				if (resolved != row) {
+					// already loaded in this unit of work
+					return resolved;
+				}
+			}
+			query.rowLoaded(row);
+			return row;
+		} catch (SQLException | IllegalArgumentException e) {
+			throw fail(e);
+		} catch (DbException e) {
+			if (timer != null) {
+				timer.failed(e);
+			}
+			close();
+			throw e;
+		}
+	}
+
+	private DbException fail(Exception e) {
+		if (timer != null) {
+			timer.failed(e);
+		}
+		close();
+		DbException dbe = new DbException(e);
+		dbe.setSql(query.getSql());
+		return dbe;
+	}
+
+	/**
+	 * Releases the result set, the statement and, if it is not owned by a
+	 * transaction, the connection. Safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (timer != null) {
+			timer.completed(rows);
+		}
+		Util.closeQuietly(rs);
+		// may go back into the transaction's statement cache, so the query must
+		// stop treating it as running first
+		query.release(state);
+		if (con != null) {
+			if (restoreAutoCommit) {
+				try {
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// bury it, the pool resets the connection anyway
+				}
+			}
+			Util.closeQuietly(con);
+		}
+	}
+
+}
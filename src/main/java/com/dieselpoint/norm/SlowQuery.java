@@ -0,0 +1,106 @@
+package com.dieselpoint.norm;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement that took longer than a {@link SlowQueryLog}'s threshold.
+ */
+public class SlowQuery {
+
+	private final long timestamp;
+	private final String sql;
+	private final String fingerprint;
+	private final String[] args;
+	private final long rows;
+	private final long totalNanos;
+	private final long connectionWaitNanos;
+	private final StackTraceElement caller;
+	private final Throwable error;
+
+	public SlowQuery(long timestamp, String sql, String fingerprint, String[] args, long rows, long totalNanos,
+			long connectionWaitNanos, StackTraceElement caller, Throwable error) {
+		this.timestamp = timestamp;
+		this.sql = sql;
+		this.fingerprint = fingerprint;
+		this.args = args;
+		this.rows = rows;
+		this.totalNanos = totalNanos;
+		this.connectionWaitNanos = connectionWaitNanos;
+		this.caller = caller;
+		this.error = error;
+	}
+
+	/**
+	 * Returns when the statement finished, in milliseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the args as strings, cut to the log's max arg length, or null if
+	 * they weren't available.
+	 */
+	public String[] getArgs() {
+		return args;
+	}
+
+	/**
+	 * Returns the rows returned or affected, or 0 if the statement failed.
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getConnectionWaitNanos() {
+		return connectionWaitNanos;
+	}
+
+	/**
+	 * Returns the first frame on the stack outside of norm and the JDK, or null
+	 * if there wasn't one.
+	 */
+	public StackTraceElement getCaller() {
+		return caller;
+	}
+
+	/**
+	 * Returns the error if the statement failed, or null.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("slow query ").append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append("ms");
+		buf.append(" (connection wait ").append(TimeUnit.NANOSECONDS.toMillis(connectionWaitNanos)).append("ms)");
+		buf.append(" rows=").append(rows);
+		if (caller != null) {
+			buf.append(" at ").append(caller);
+		}
+		if (error != null) {
+			buf.append(" error=").append(error);
+		}
+		buf.append(": ").append(sql);
+		if (args != null) {
+			buf.append(" args=").append(Arrays.toString(args));
+		}
+		return buf.toString();
+	}
+
+}
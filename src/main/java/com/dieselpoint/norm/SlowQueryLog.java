@@ -0,0 +1,209 @@
+package com.dieselpoint.norm;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs statements that take longer than a threshold, with their sql, args,
+ * rows, connection wait and the line of application code that ran them.
+ * Install one with Database.setSlowQueryLog().
+ * <p>
+ * The entry is built on the thread that ran the statement, but only for
+ * statements over the threshold that are sampled. It is then handed to a
+ * bounded queue, and a daemon thread passes it to the sink. If the queue is
+ * full the entry is dropped and counted, so a slow sink never holds up a
+ * query. The default sink writes to java.util.logging at WARNING.
+ */
+public class SlowQueryLog implements QueryListener {
+
+	private static final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+
+	private volatile long thresholdNanos;
+	private volatile double sampleRate = 1;
+	private volatile int maxArgLength = 100;
+	private volatile SlowQuerySink sink = query -> logger.warning(query.toString());
+
+	private final BlockingQueue<SlowQuery> queue;
+	private final LongAdder dropped = new LongAdder();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean closed;
+	private Thread writer;
+
+	public SlowQueryLog(Duration threshold) {
+		this(threshold, 1000);
+	}
+
+	/**
+	 * @param queueCapacity the number of entries that can wait for the sink
+	 *                      before new ones are dropped
+	 */
+	public SlowQueryLog(Duration threshold, int queueCapacity) {
+		setThreshold(threshold);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	public void setThreshold(Duration threshold) {
+		this.thresholdNanos = threshold.toNanos();
+	}
+
+	public Duration getThreshold() {
+		return Duration.ofNanos(thresholdNanos);
+	}
+
+	/**
+	 * Set the fraction of slow statements to log, from 0 to 1. Defaults to 1.
+	 */
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Set the number of characters of each arg to keep. Longer ones are cut
+	 * and end with "...". Defaults to 100.
+	 */
+	public void setMaxArgLength(int maxArgLength) {
+		this.maxArgLength = maxArgLength;
+	}
+
+	public int getMaxArgLength() {
+		return maxArgLength;
+	}
+
+	public void setSink(SlowQuerySink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Returns the number of entries dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	@Override
+	public void completed(QueryEvent event, long rows, long mappingNanos, long totalNanos) {
+		check(event, rows, totalNanos, null);
+	}
+
+	@Override
+	public void failed(QueryEvent event, Throwable error, long totalNanos) {
+		check(event, 0, totalNanos, error);
+	}
+
+	private void check(QueryEvent event, long rows, long totalNanos, Throwable error) {
+		if (totalNanos < thresholdNanos || closed) {
+			return;
+		}
+		double rate = sampleRate;
+		if (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+			return;
+		}
+		SlowQuery query = new SlowQuery(System.currentTimeMillis(), event.getSql(), event.getFingerprint(),
+				formatArgs(event.getArgs()), rows, totalNanos, event.getConnectionWaitNanos(), findCaller(), error);
+		if (started.compareAndSet(false, true)) {
+			start();
+		}
+		if (!queue.offer(query)) {
+			dropped.increment();
+		}
+	}
+
+	private String[] formatArgs(Object[] args) {
+		if (args == null) {
+			return null;
+		}
+		int max = maxArgLength;
+		String[] out = new String[args.length];
+		for (int i = 0; i < args.length; i++) {
+			String str = format(args[i]);
+			if (str.length() > max) {
+				str = str.substring(0, Math.max(0, max)) + "...";
+			}
+			out[i] = str;
+		}
+		return out;
+	}
+
+	private static String format(Object arg) {
+		if (arg instanceof byte[]) {
+			return "byte[" + ((byte[]) arg).length + "]";
+		} else if (arg instanceof Object[]) {
+			return Arrays.deepToString((Object[]) arg);
+		} else if (arg != null && arg.getClass().isArray()) {
+			// a primitive array; wrap it so deepToString() formats it, then unwrap
+			String str = Arrays.deepToString(new Object[] { arg });
+			return str.substring(1, str.length() - 1);
+		}
+		return String.valueOf(arg);
+	}
+
+	/**
+	 * Returns the first frame that isn't in norm or the JDK.
+	 */
+	private static StackTraceElement findCaller() {
+		for (StackTraceElement frame : new Throwable().getStackTrace()) {
+			String name = frame.getClassName();
+			if (!name.startsWith("com.dieselpoint.norm.") && !name.startsWith("java.")
+					&& !name.startsWith("javax.") && !name.startsWith("jdk.") && !name.startsWith("sun.")) {
+				return frame;
+			}
+		}
+		return null;
+	}
+
+	private synchronized void start() {
+		writer = new Thread(this::drain, "norm-slow-query-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private void drain() {
+		while (!closed || !queue.isEmpty()) {
+			SlowQuery query;
+			try {
+				query = queue.take();
+			} catch (InterruptedException e) {
+				if (closed) {
+					// log what's left, then stop
+					while ((query = queue.poll()) != null) {
+						write(query);
+					}
+					return;
+				}
+				continue;
+			}
+			write(query);
+		}
+	}
+
+	private void write(SlowQuery query) {
+		try {
+			sink.log(query);
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Slow query sink failed", e);
+		}
+	}
+
+	/**
+	 * Stop taking new entries. Entries already queued are still passed to the
+	 * sink.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (writer != null) {
+			writer.interrupt();
+		}
+	}
+
+}
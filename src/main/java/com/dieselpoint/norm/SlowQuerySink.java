@@ -0,0 +1,11 @@
+package com.dieselpoint.norm;
+
+/**
+ * Receives entries from a {@link SlowQueryLog}. Called on the log's own
+ * thread, one entry at a time.
+ */
+public interface SlowQuerySink {
+
+	public void log(SlowQuery query);
+
+}
@@ -0,0 +1,111 @@
+package com.dieselpoint.norm;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The update values of rows as they were when last loaded or written, used by
+ * dirty checking to find the columns that changed. Rows are held by weak,
+ * identity-based references, so a snapshot goes away when its row is garbage
+ * collected, and rows with their own equals() don't collide.
+ */
+class Snapshots {
+
+	private final Map<RowRef, Object[]> snapshots = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+	Object[] get(Object row) {
+		expunge();
+		return snapshots.get(new RowRef(row, null));
+	}
+
+	void put(Object row, Object[] values) {
+		expunge();
+		snapshots.put(new RowRef(row, queue), copy(values));
+	}
+
+	void remove(Object row) {
+		expunge();
+		snapshots.remove(new RowRef(row, null));
+	}
+
+	int size() {
+		expunge();
+		return snapshots.size();
+	}
+
+	/**
+	 * Returns a bit for each value, except the last (the primary key), that
+	 * differs between the snapshot and the current values.
+	 */
+	static BitSet diff(Object[] before, Object[] after) {
+		BitSet changed = new BitSet(after.length);
+		for (int i = 0; i < after.length - 1; i++) {
+			if (!Objects.deepEquals(before[i], after[i])) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	/*
+	 * Arrays and Dates are commonly changed in place, so keep copies of them
+	 * rather than references to the row's own objects. Other mutable values
+	 * should be replaced, not changed, for dirty checking to see the change.
+	 */
+	static Object[] copy(Object[] values) {
+		Object[] out = values.clone();
+		for (int i = 0; i < out.length; i++) {
+			Object value = out[i];
+			if (value != null && value.getClass().isArray()) {
+				int length = Array.getLength(value);
+				Object array = Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, array, 0, length);
+				out[i] = array;
+			} else if (value instanceof Date) {
+				out[i] = ((Date) value).clone();
+			}
+		}
+		return out;
+	}
+
+	private void expunge() {
+		Object ref;
+		while ((ref = queue.poll()) != null) {
+			snapshots.remove(ref);
+		}
+	}
+
+	private static class RowRef extends WeakReference<Object> {
+		private final int hash;
+
+		RowRef(Object row, ReferenceQueue<Object> queue) {
+			super(row, queue);
+			this.hash = System.identityHashCode(row);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RowRef)) {
+				return false;
+			}
+			Object row = get();
+			return row != null && row == ((RowRef) obj).get();
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.dieselpoint.norm;
+
+/**
+ * A query argument that is bound as a single sql array, created on the
+ * statement's own connection with Connection.createArrayOf().
+ */
+final class SqlArray {
+
+	final String typeName;
+	final Object[] elements;
+
+	SqlArray(String typeName, Object[] elements) {
+		this.typeName = typeName;
+		this.elements = elements;
+	}
+
+	@Override
+	public String toString() {
+		return typeName + "[" + elements.length + "]";
+	}
+
+}
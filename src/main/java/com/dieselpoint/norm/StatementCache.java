@@ -0,0 +1,140 @@
+package com.dieselpoint.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of PreparedStatements for a single
+ * connection, keyed by sql and generated-keys mode. A statement is taken out of
+ * the cache while it is in use, so two queries never share one, and goes back
+ * in when it is released.
+ */
+class StatementCache {
+
+	private final Connection con;
+	private final int maxSize;
+
+	private final LinkedHashMap<Key, PreparedStatement> cache;
+	private final IdentityHashMap<PreparedStatement, Key> inUse = new IdentityHashMap<>();
+
+	private long hits;
+	private long misses;
+	private boolean closed;
+
+	StatementCache(Connection con, int maxSize) {
+		this.con = con;
+		this.maxSize = maxSize;
+		this.cache = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+				if (size() > StatementCache.this.maxSize) {
+					Util.closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	synchronized PreparedStatement take(String sql, boolean returnGeneratedKeys) throws SQLException {
+		Key key = new Key(sql, returnGeneratedKeys);
+		PreparedStatement state = cache.remove(key);
+		if (state != null) {
+			hits++;
+		} else {
+			misses++;
+			if (returnGeneratedKeys) {
+				state = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			} else {
+				state = con.prepareStatement(sql);
+			}
+		}
+		inUse.put(state, key);
+		return state;
+	}
+
+	/**
+	 * Put the statement back in the cache, or close it if it didn't come from
+	 * the cache, the cache is closed, or it can't be reset.
+	 */
+	synchronized void release(PreparedStatement state) {
+		if (state == null) {
+			return;
+		}
+		Key key = inUse.remove(state);
+		if (key == null || closed) {
+			Util.closeQuietly(state);
+			return;
+		}
+
+		try {
+			state.clearParameters();
+			state.clearBatch();
+			state.setFetchSize(0);
+			state.setMaxRows(0);
+		} catch (SQLException e) {
+			Util.closeQuietly(state);
+			return;
+		}
+
+		PreparedStatement old = cache.put(key, state);
+		if (old != null) {
+			// two copies were in use at once, keep just one
+			Util.closeQuietly(old);
+		}
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Close all cached statements. Statements still in use are closed when they
+	 * are released.
+	 */
+	synchronized void close() {
+		closed = true;
+		Iterator<PreparedStatement> it = cache.values().iterator();
+		while (it.hasNext()) {
+			Util.closeQuietly(it.next());
+			it.remove();
+		}
+	}
+
+	private static class Key {
+		private final String sql;
+		private final boolean returnGeneratedKeys;
+
+		Key(String sql, boolean returnGeneratedKeys) {
+			this.sql = sql;
+			this.returnGeneratedKeys = returnGeneratedKeys;
+		}
+
+		@Override
+		public int hashCode() {
+			return sql.hashCode() * 2 + (returnGeneratedKeys ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return returnGeneratedKeys == other.returnGeneratedKeys && sql.equals(other.sql);
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.dieselpoint.norm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the counters for one statement fingerprint. See
+ * {@link Database#getStatementStats()}.
+ */
+public class StatementStats {
+
+	private final String fingerprint;
+	private final String table;
+	private final long calls;
+	private final long errors;
+	private final long rows;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long p99Nanos;
+
+	public StatementStats(String fingerprint, String table, long calls, long errors, long rows, long totalNanos,
+			long maxNanos, long p99Nanos) {
+		this.fingerprint = fingerprint;
+		this.table = table;
+		this.calls = calls;
+		this.errors = errors;
+		this.rows = rows;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.p99Nanos = p99Nanos;
+	}
+
+	/**
+	 * Returns the normalized sql, as in {@link QueryEvent#getFingerprint()}.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the table of the first statement seen with this fingerprint, or
+	 * null if it wasn't known.
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the number of times statements with this fingerprint ran,
+	 * including ones that failed.
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Returns the total rows returned or affected.
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMeanNanos() {
+		return calls == 0 ? 0 : totalNanos / calls;
+	}
+
+	/**
+	 * Returns the 99th percentile time, accurate to within about 12%.
+	 */
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "calls=" + calls + " errors=" + errors + " rows=" + rows + " total="
+				+ TimeUnit.NANOSECONDS.toMillis(totalNanos) + "ms mean=" + TimeUnit.NANOSECONDS.toMicros(getMeanNanos())
+				+ "us p99=" + TimeUnit.NANOSECONDS.toMicros(p99Nanos) + "us max="
+				+ TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us " + fingerprint;
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.dieselpoint.norm;
+
+import java.util.List;
+
+/**
+ * The JMX view of a {@link StatementStatsRegistry}.
+ */
+public interface StatementStatsMXBean {
+
+	/**
+	 * Returns the statements with the most total time, most first.
+	 */
+	public List<StatementStats> getTopStatements();
+
+	/**
+	 * Returns the number of distinct fingerprints being tracked.
+	 */
+	public int getStatementCount();
+
+	public long getTotalCalls();
+
+	public long getTotalErrors();
+
+	public void reset();
+
+}
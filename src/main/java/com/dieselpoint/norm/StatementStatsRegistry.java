@@ -0,0 +1,135 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts calls, time, rows and errors for each statement fingerprint, like
+ * pg_stat_statements but from the client's side. It is a QueryListener;
+ * Database.setStatementStatsEnabled() registers one and exports it over JMX.
+ * Counters are LongAdders and histograms are lock-free, so threads running
+ * statements don't contend. Once maxStatements fingerprints are tracked, new
+ * ones are counted together under LatencyListener.OTHER.
+ */
+public class StatementStatsRegistry implements QueryListener, StatementStatsMXBean {
+
+	/**
+	 * The number of statements getTopStatements() returns.
+	 */
+	public static final int TOP_STATEMENTS = 20;
+
+	private final int maxStatements;
+	private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+	public StatementStatsRegistry() {
+		this(5000);
+	}
+
+	public StatementStatsRegistry(int maxStatements) {
+		this.maxStatements = maxStatements;
+	}
+
+	@Override
+	public void completed(QueryEvent event, long rows, long mappingNanos, long totalNanos) {
+		Counters c = getCounters(event);
+		c.calls.increment();
+		c.rows.add(rows);
+		c.latency.record(totalNanos);
+	}
+
+	@Override
+	public void failed(QueryEvent event, Throwable error, long totalNanos) {
+		Counters c = getCounters(event);
+		c.calls.increment();
+		c.errors.increment();
+		c.latency.record(totalNanos);
+	}
+
+	private Counters getCounters(QueryEvent event) {
+		String key = event.getFingerprint();
+		if (key == null) {
+			key = LatencyListener.OTHER;
+		}
+		Counters c = counters.get(key);
+		if (c == null) {
+			if (counters.size() >= maxStatements) {
+				key = LatencyListener.OTHER;
+			}
+			c = counters.computeIfAbsent(key, k -> new Counters(event.getTable()));
+		}
+		return c;
+	}
+
+	/**
+	 * Returns a snapshot of every statement, most total time first.
+	 */
+	public List<StatementStats> getSnapshot() {
+		List<StatementStats> out = new ArrayList<>(counters.size());
+		counters.forEach((fingerprint, c) -> out.add(c.snapshot(fingerprint)));
+		out.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+		return out;
+	}
+
+	/**
+	 * Returns the n statements with the most total time, most first.
+	 */
+	public List<StatementStats> getTop(int n) {
+		List<StatementStats> all = getSnapshot();
+		return all.size() <= n ? all : new ArrayList<>(all.subList(0, n));
+	}
+
+	@Override
+	public List<StatementStats> getTopStatements() {
+		return getTop(TOP_STATEMENTS);
+	}
+
+	@Override
+	public int getStatementCount() {
+		return counters.size();
+	}
+
+	@Override
+	public long getTotalCalls() {
+		long total = 0;
+		for (Counters c : counters.values()) {
+			total += c.calls.sum();
+		}
+		return total;
+	}
+
+	@Override
+	public long getTotalErrors() {
+		long total = 0;
+		for (Counters c : counters.values()) {
+			total += c.errors.sum();
+		}
+		return total;
+	}
+
+	@Override
+	public void reset() {
+		counters.clear();
+	}
+
+	private static class Counters {
+		final String table;
+		final LongAdder calls = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder rows = new LongAdder();
+		final LatencyHistogram latency = new LatencyHistogram();
+
+		Counters(String table) {
+			this.table = table;
+		}
+
+		StatementStats snapshot(String fingerprint) {
+			return new StatementStats(fingerprint, table, calls.sum(), errors.sum(), rows.sum(),
+					latency.getTotalNanos(), latency.getMaxNanos(), latency.getPercentileNanos(0.99));
+		}
+	}
+
+}
@@ -3,6 +3,11 @@ package com.dieselpoint.norm;
 import java.io.Closeable;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a database transaction. Create it using Transaction trans =
@@ -21,6 +26,11 @@ import java.sql.Connection;
  */
 public class Transaction implements Closeable {
 	private Connection con;
+	private int statementCacheSize;
+	private StatementCache statementCache;
+	private List<Runnable> commitActions;
+	private List<Runnable> rollbackActions;
+	private UnitOfWork unitOfWork;
 
 	// package-private
 	void setConnection(Connection con) {
@@ -32,10 +42,173 @@ public class Transaction implements Closeable {
 		}
 	}
 
+	// package-private
+	void setUnitOfWork(UnitOfWork unitOfWork) {
+		this.unitOfWork = unitOfWork;
+	}
+
+	/**
+	 * Returns true if this transaction was started with
+	 * Database.startUnitOfWork().
+	 */
+	public boolean isUnitOfWork() {
+		return unitOfWork != null;
+	}
+
+	/**
+	 * In unit-of-work mode, send the pending inserts, updates, upserts and
+	 * deletes to the database now instead of waiting for commit(). Queries that
+	 * are part of the transaction do this before they run, so they see the
+	 * transaction's own writes. Does nothing otherwise.
+	 */
+	public void flush() {
+		if (unitOfWork != null) {
+			unitOfWork.flush();
+		}
+	}
+
+	/**
+	 * Returns the number of rows with writes waiting for flush() or commit().
+	 */
+	public int getPendingWriteCount() {
+		return unitOfWork == null ? 0 : unitOfWork.getPendingCount();
+	}
+
+	/**
+	 * Returns the unit of work if writes should be held for it rather than run
+	 * now, or null.
+	 */
+	UnitOfWork getDeferringUnitOfWork() {
+		return unitOfWork != null && unitOfWork.isDeferring() ? unitOfWork : null;
+	}
+
+	/**
+	 * Returns the instance of this row already loaded in this unit of work, if
+	 * any. Only applies in unit-of-work mode.
+	 */
+	<T> T resolve(T row) {
+		if (unitOfWork == null) {
+			return row;
+		}
+		@SuppressWarnings("unchecked")
+		T resolved = (T) unitOfWork.resolve(row);
+		return resolved;
+	}
+
+	/**
+	 * Set the number of prepared statements to keep open for reuse during this
+	 * transaction, so that queries that run the same sql many times don't have
+	 * to prepare it again each time. 0 turns the cache off. Defaults to
+	 * Database.getStatementCacheSize(). Must be called before the first query.
+	 */
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * Get a prepared statement from the cache, or prepare a new one. Give it back
+	 * with releaseStatement() instead of closing it.
+	 */
+	PreparedStatement prepareStatement(String sql, boolean returnGeneratedKeys) throws SQLException {
+		if (statementCacheSize <= 0) {
+			if (returnGeneratedKeys) {
+				return con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			}
+			return con.prepareStatement(sql);
+		}
+		if (statementCache == null) {
+			statementCache = new StatementCache(con, statementCacheSize);
+		}
+		return statementCache.take(sql, returnGeneratedKeys);
+	}
+
+	void releaseStatement(PreparedStatement state) {
+		if (statementCache == null) {
+			Util.closeQuietly(state);
+		} else {
+			statementCache.release(state);
+		}
+	}
+
+	/**
+	 * Returns the number of times a prepared statement was reused from the cache.
+	 */
+	public long getStatementCacheHits() {
+		return statementCache == null ? 0 : statementCache.getHits();
+	}
+
+	/**
+	 * Returns the number of times a statement had to be prepared because it
+	 * wasn't in the cache.
+	 */
+	public long getStatementCacheMisses() {
+		return statementCache == null ? 0 : statementCache.getMisses();
+	}
+
+	/**
+	 * Run this action after the transaction commits. It is dropped if the
+	 * transaction is rolled back.
+	 */
+	public void onCommit(Runnable action) {
+		if (commitActions == null) {
+			commitActions = new ArrayList<>();
+		}
+		commitActions.add(action);
+	}
+
+	/**
+	 * Run this action if the transaction is rolled back, or if the commit
+	 * fails. It is dropped if the transaction commits.
+	 */
+	public void onRollback(Runnable action) {
+		if (rollbackActions == null) {
+			rollbackActions = new ArrayList<>();
+		}
+		rollbackActions.add(action);
+	}
+
+	private void runCommitActions() {
+		rollbackActions = null;
+		if (commitActions != null) {
+			List<Runnable> actions = commitActions;
+			commitActions = null;
+			for (Runnable action : actions) {
+				action.run();
+			}
+		}
+	}
+
+	private void runRollbackActions() {
+		commitActions = null;
+		if (rollbackActions != null) {
+			List<Runnable> actions = rollbackActions;
+			rollbackActions = null;
+			for (Runnable action : actions) {
+				action.run();
+			}
+		}
+	}
+
+	private void closeStatements() {
+		if (statementCache != null) {
+			statementCache.close();
+		}
+	}
+
 	public void commit() {
+		if (unitOfWork != null) {
+			try {
+				unitOfWork.flush();
+			} catch (RuntimeException e) {
+				rollback();
+				throw e;
+			}
+		}
 		try {
+			closeStatements();
 			con.commit();
 		} catch (Throwable t) {
+			runRollbackActions();
 			throw new DbException(t);
 		} finally {
 			try {
@@ -44,10 +217,16 @@ public class Transaction implements Closeable {
 				throw new DbException(t);
 			}
 		}
+		runCommitActions();
 	}
 
 	public void rollback() {
+		runRollbackActions();
+		if (unitOfWork != null) {
+			unitOfWork.clear();
+		}
 		try {
+			closeStatements();
 			con.rollback();
 		} catch (Throwable t) {
 			throw new DbException(t);
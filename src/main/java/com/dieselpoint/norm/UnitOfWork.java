@@ -0,0 +1,292 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+
+/**
+ * The state of a Transaction in unit-of-work mode: an identity map of the
+ * entities it has loaded, and the inserts, updates, upserts and deletes that
+ * haven't been sent to the database yet.
+ * <p>
+ * Writes are held per row until flush(), which sends them grouped by
+ * statement type and table as JDBC batches. Inserts go first, in the order
+ * their tables were first written, then updates, then upserts, and deletes go
+ * last, in reverse table order, so parents are inserted before children and
+ * deleted after them. Writes to the same row are combined: an update of a
+ * pending insert is dropped, because the insert reads the row's values at
+ * flush time, and deleting a pending insert cancels both. Inserting or
+ * upserting a row with the same primary key as a pending delete sends the
+ * pending writes first, so the delete runs before the new row goes in.
+ * </p>
+ */
+class UnitOfWork {
+
+	enum Op {
+		INSERT, UPDATE, UPSERT, DELETE
+	}
+
+	private final Database db;
+	private final Transaction transaction;
+
+	private final Map<IdentityKey, Object> identityMap = new HashMap<>();
+
+	// the pending op for each row
+	private final IdentityHashMap<Object, Pending> pending = new IdentityHashMap<>();
+
+	// rows in the order they were written, per op and table; a row that has
+	// since moved to another op or group is skipped at flush
+	private final Map<Op, LinkedHashMap<Group, List<Object>>> groups = new HashMap<>();
+
+	// tables in the order they were first written
+	private final LinkedHashSet<String> tableOrder = new LinkedHashSet<>();
+
+	// primary keys of the rows with a pending delete
+	private final Set<IdentityKey> deletedKeys = new HashSet<>();
+
+	private boolean flushing;
+
+	UnitOfWork(Database db, Transaction transaction) {
+		this.db = db;
+		this.transaction = transaction;
+		for (Op op : Op.values()) {
+			groups.put(op, new LinkedHashMap<>());
+		}
+	}
+
+	/**
+	 * Returns true if writes should be held for flush() rather than run now.
+	 */
+	boolean isDeferring() {
+		return !flushing;
+	}
+
+	/**
+	 * Returns the instance already loaded for this row's class and primary key,
+	 * or makes this row that instance.
+	 */
+	Object resolve(Object row) {
+		IdentityKey key = getIdentityKey(row);
+		if (key == null) {
+			return row;
+		}
+		Object existing = identityMap.putIfAbsent(key, row);
+		return existing == null ? row : existing;
+	}
+
+	private IdentityKey getIdentityKey(Object row) {
+		if (row == null || row instanceof Map) {
+			return null;
+		}
+		PojoInfo pojoInfo = db.getSqlMaker().getPojoInfo(row.getClass());
+		String key = pojoInfo.getPrimaryKeyName();
+		if (key == null) {
+			return null;
+		}
+		Object id = pojoInfo.getValue(row, key);
+		return id == null ? null : new IdentityKey(row.getClass(), id);
+	}
+
+	void add(Op op, String table, Collection<?> rows) {
+		for (Object row : rows) {
+			add(op, table, row);
+		}
+	}
+
+	private void add(Op op, String table, Object row) {
+		Pending current = pending.get(row);
+		if (current != null) {
+			if (current.op == op) {
+				return;
+			}
+			if (current.op == Op.DELETE || op == Op.INSERT) {
+				// can't be combined; keep the order by sending what we have
+				flush();
+			} else if (current.op == Op.INSERT) {
+				if (op == Op.DELETE) {
+					pending.remove(row);
+					return;
+				}
+				return; // the insert will write the current values
+			} else if (current.op == Op.UPSERT && op == Op.UPDATE) {
+				return;
+			}
+		}
+		if ((op == Op.INSERT || op == Op.UPSERT) && !deletedKeys.isEmpty()
+				&& deletedKeys.contains(getIdentityKey(row))) {
+			// the delete has to reach the database before a row with its key
+			flush();
+		}
+		if (op == Op.UPDATE || op == Op.UPSERT) {
+			// written rows are managed too; inserted rows join at flush, once
+			// any generated key is known
+			resolve(row);
+		} else if (op == Op.DELETE) {
+			IdentityKey key = getIdentityKey(row);
+			if (key != null) {
+				identityMap.remove(key, row);
+				deletedKeys.add(key);
+			}
+		}
+
+		Group group = new Group(table == null ? getTable(row) : table, table, row.getClass());
+		tableOrder.add(group.table);
+		pending.put(row, new Pending(op, group));
+		groups.get(op).computeIfAbsent(group, g -> new ArrayList<>()).add(row);
+	}
+
+	private String getTable(Object row) {
+		return db.getSqlMaker().getPojoInfo(row.getClass()).getTable();
+	}
+
+	/**
+	 * Send all pending writes to the database.
+	 */
+	void flush() {
+		if (flushing || pending.isEmpty()) {
+			return;
+		}
+		flushing = true;
+		try {
+			List<String> tables = new ArrayList<>(tableOrder);
+			List<String> reversed = new ArrayList<>(tables);
+			Collections.reverse(reversed);
+
+			flush(Op.INSERT, tables, Query::insertAll);
+			flush(Op.UPDATE, tables, Query::updateAll);
+			flush(Op.UPSERT, tables, Query::upsertAll);
+			flush(Op.DELETE, reversed, Query::deleteAll);
+		} finally {
+			pending.clear();
+			tableOrder.clear();
+			deletedKeys.clear();
+			for (Map<Group, List<Object>> byGroup : groups.values()) {
+				byGroup.clear();
+			}
+			flushing = false;
+		}
+	}
+
+	private void flush(Op op, List<String> tableOrder, BiConsumer<Query, List<Object>> write) {
+		Map<Group, List<Object>> byGroup = groups.get(op);
+		for (String table : tableOrder) {
+			for (Map.Entry<Group, List<Object>> entry : byGroup.entrySet()) {
+				Group group = entry.getKey();
+				if (!group.table.equals(table)) {
+					continue;
+				}
+				List<Object> rows = new ArrayList<>();
+				for (Object row : entry.getValue()) {
+					Pending p = pending.get(row);
+					if (p != null && p.op == op && p.group.equals(group)) {
+						rows.add(row);
+						pending.remove(row); // so a row listed twice is sent once
+					}
+				}
+				if (!rows.isEmpty()) {
+					Query query = new Query(db).transaction(transaction);
+					if (group.tableOverride != null) {
+						query.table(group.tableOverride);
+					}
+					write.accept(query, rows);
+					if (op == Op.INSERT) {
+						for (Object row : rows) {
+							resolve(row);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget the pending writes and loaded entities, after a rollback.
+	 */
+	void clear() {
+		pending.clear();
+		tableOrder.clear();
+		deletedKeys.clear();
+		identityMap.clear();
+		for (Map<Group, List<Object>> byGroup : groups.values()) {
+			byGroup.clear();
+		}
+	}
+
+	int getPendingCount() {
+		return pending.size();
+	}
+
+	private static class Pending {
+		final Op op;
+		final Group group;
+
+		Pending(Op op, Group group) {
+			this.op = op;
+			this.group = group;
+		}
+	}
+
+	private static class Group {
+		final String table;
+		final String tableOverride;
+		final Class<?> rowClass;
+
+		Group(String table, String tableOverride, Class<?> rowClass) {
+			this.table = table;
+			this.tableOverride = tableOverride;
+			this.rowClass = rowClass;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(table, tableOverride, rowClass);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Group)) {
+				return false;
+			}
+			Group other = (Group) obj;
+			return table.equals(other.table) && Objects.equals(tableOverride, other.tableOverride)
+					&& rowClass == other.rowClass;
+		}
+	}
+
+	private static class IdentityKey {
+		final Class<?> rowClass;
+		final Object id;
+
+		IdentityKey(Class<?> rowClass, Object id) {
+			this.rowClass = rowClass;
+			this.id = EntityCache.normalizeKey(id);
+		}
+
+		@Override
+		public int hashCode() {
+			return rowClass.hashCode() * 31 + id.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IdentityKey)) {
+				return false;
+			}
+			IdentityKey other = (IdentityKey) obj;
+			return rowClass == other.rowClass && id.equals(other.id);
+		}
+	}
+
+}
@@ -50,6 +50,37 @@ public class Util {
 		return sb.toString();
 	}
 	
+	/**
+	 * Returns rowCount groups of count question marks, for a multi-row insert:
+	 * "(?,?),(?,?),..."
+	 */
+	public static String getQuestionMarkRows(int count, int rowCount) {
+		String row = "(" + getQuestionMarks(count) + ")";
+		StringBuilder sb = new StringBuilder((row.length() + 1) * rowCount);
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(row);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Close a Connection, Statement, ResultSet or other resource, ignoring any
+	 * exception. Does nothing if ac is null.
+	 */
+	public static void closeQuietly(AutoCloseable ac) {
+		if (ac == null) {
+			return;
+		}
+		try {
+			ac.close();
+		} catch (Exception e) {
+			// bury it
+		}
+	}
+
 	public static boolean isPrimitiveOrString(Class<?> c) {
 		if (c.isPrimitive()) {
 			return true;
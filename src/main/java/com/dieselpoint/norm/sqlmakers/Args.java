@@ -0,0 +1,32 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Binding for the SqlMaker bind...Args() defaults.
+ */
+class Args {
+
+	static void bind(PreparedStatement state, Object[] args) throws SQLException {
+		bind(state, 0, args);
+	}
+
+	/**
+	 * Bind args to the parameters after the first offset ones, and return the
+	 * offset for whatever follows them.
+	 */
+	static int bind(PreparedStatement state, int offset, Object[] args) throws SQLException {
+		for (int i = 0; i < args.length; i++) {
+			Object arg = args[i];
+			// as in Query, so that Lists can go in array columns
+			if (arg instanceof List) {
+				arg = ((List<?>) arg).toArray();
+			}
+			state.setObject(offset + i + 1, arg);
+		}
+		return offset + args.length;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Maps the first column of each row to a primitive wrapper, String or jdbc
+ * type.
+ */
+class ColumnRowMapper<T> implements RowMapper<T> {
+
+	private final SqlMaker sqlMaker;
+	private final String columnTypeName;
+
+	ColumnRowMapper(SqlMaker sqlMaker, ResultSetMetaData meta) throws SQLException {
+		this.sqlMaker = sqlMaker;
+		this.columnTypeName = meta.getColumnTypeName(1);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T mapRow(ResultSet rs) throws SQLException {
+		Object colValue = rs.getObject(1);
+		if (colValue != null) {
+			colValue = sqlMaker.convertValue(colValue, columnTypeName);
+		}
+		return (T) colValue;
+	}
+
+}
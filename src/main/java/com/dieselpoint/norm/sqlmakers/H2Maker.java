@@ -0,0 +1,66 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import com.dieselpoint.norm.Util;
+
+/**
+ * Produces sql for the H2 database. Upserts use "merge into ... key (pk)".
+ */
+public class H2Maker extends StandardSqlMaker {
+
+	/**
+	 * H2 has no fixed limit on bind parameters, but keep statements a reasonable
+	 * size.
+	 */
+	@Override
+	protected int getMaxBindParameters() {
+		return Short.MAX_VALUE;
+	}
+
+	/**
+	 * A plain temporary table in H2 is global, so ask for a local one.
+	 */
+	@Override
+	public String getCreateIdTableSql(Class<?> rowClass, String table, String column) {
+		return "create local temporary table if not exists " + table + " (" + column + " "
+				+ getIdColType(getPojoInfo(rowClass)) + " primary key)";
+	}
+
+	@Override
+	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
+		if (pojoInfo.primaryKeyName == null) {
+			return;
+		}
+		makeUpsertColumnNames(pojoInfo);
+		pojoInfo.upsertSql = makeMultiRowUpsertSql(pojoInfo, 1);
+	}
+
+	@Override
+	protected String makeMultiRowInsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+		buf.append(Util.join(pojoInfo.insertColumnNames));
+		buf.append(") values ");
+		buf.append(Util.getQuestionMarkRows(pojoInfo.insertSqlArgCount, rowCount));
+		return buf.toString();
+	}
+
+	@Override
+	protected String makeMultiRowUpsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		if (pojoInfo.upsertColumnNames == null) {
+			return null;
+		}
+		StringBuilder buf = new StringBuilder();
+		buf.append("merge into ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+		buf.append(Util.join(pojoInfo.upsertColumnNames));
+		buf.append(") key (");
+		buf.append(pojoInfo.primaryKeyName);
+		buf.append(") values ");
+		buf.append(Util.getQuestionMarkRows(pojoInfo.upsertSqlArgCount, rowCount));
+		return buf.toString();
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps rows to Maps of column label to value.
+ */
+class MapRowMapper<T> implements RowMapper<T> {
+
+	private final Class<T> clazz;
+	private final String[] labels;
+
+	MapRowMapper(Class<T> clazz, ResultSetMetaData meta) throws SQLException {
+		this.clazz = clazz;
+		labels = new String[meta.getColumnCount()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = meta.getColumnLabel(i + 1);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T mapRow(ResultSet rs) throws SQLException {
+		Map<String, Object> map;
+		try {
+			map = (Map<String, Object>) clazz.newInstance();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new DbException(e);
+		}
+		for (int i = 0; i < labels.length; i++) {
+			map.put(labels[i], rs.getObject(i + 1));
+		}
+		return (T) map;
+	}
+
+}
@@ -4,11 +4,15 @@ import com.dieselpoint.norm.Query;
 import com.dieselpoint.norm.Util;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class MySqlMaker extends StandardSqlMaker {
 
@@ -34,6 +38,18 @@ public class MySqlMaker extends StandardSqlMaker {
 	}
 	
 
+	@Override
+	public void bindUpsertArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		// same args as insert, bound twice
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		Property[] props = pojoInfo.insertProperties;
+		int count = props.length;
+		for (int i = 0; i < count; i++) {
+			pojoInfo.bindValue(state, i + 1, props[i], row);
+			pojoInfo.bindValue(state, count + i + 1, props[i], row);
+		}
+	}
+
 	@Override
 	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
 		ArrayList<String> cols = new ArrayList<>();
@@ -47,6 +63,10 @@ public class MySqlMaker extends StandardSqlMaker {
 		pojoInfo.insertColumnNames = cols.toArray(new String [cols.size()]);
 		pojoInfo.insertSqlArgCount = pojoInfo.insertColumnNames.length;
 
+		// the multi-row upsert takes the same columns
+		pojoInfo.upsertColumnNames = pojoInfo.insertColumnNames;
+		pojoInfo.upsertSqlArgCount = pojoInfo.insertSqlArgCount;
+
 		StringBuilder buf = new StringBuilder();
 		buf.append("insert into ");
 		buf.append(pojoInfo.table);
@@ -71,6 +91,49 @@ public class MySqlMaker extends StandardSqlMaker {
 		pojoInfo.upsertSql = buf.toString();
 	}
 
+	/**
+	 * The MySql server allows up to 65535 placeholders in a prepared statement.
+	 */
+	@Override
+	protected int getMaxBindParameters() {
+		return 65535;
+	}
+
+	@Override
+	protected String makeMultiRowInsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+		buf.append(Util.joinEscaped(Arrays.asList(pojoInfo.insertColumnNames)));
+		buf.append(") values ");
+		buf.append(Util.getQuestionMarkRows(pojoInfo.insertSqlArgCount, rowCount));
+		return buf.toString();
+	}
+
+	/**
+	 * Uses values(col) to refer to the row being inserted, so each row's args
+	 * are only sent once. (MySql 8.0.20 prefers a row alias, but values() works
+	 * on all versions.)
+	 */
+	@Override
+	protected String makeMultiRowUpsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		StringBuilder buf = new StringBuilder(makeMultiRowInsertSql(pojoInfo, rowCount));
+		buf.append(" on duplicate key update ");
+		
+		boolean first = true;
+		for (String colName: pojoInfo.insertColumnNames) {
+			if (first) {
+				first = false;
+			} else {
+				buf.append(',');
+			}
+			buf.append("`").append(colName).append("`");
+			buf.append("=values(`").append(colName).append("`)");
+		}
+		return buf.toString();
+	}
+
 	@Override
 	protected String getColType(Class<?> dataType, int length, int precision, int scale) {
 		String colType;
@@ -108,4 +171,20 @@ public class MySqlMaker extends StandardSqlMaker {
 		return value;
 	}
 
+	/**
+	 * The MySql driver reads the entire result set into memory unless the fetch
+	 * size is Integer.MIN_VALUE on a forward-only, read-only statement, in which
+	 * case it streams rows one at a time. A positive fetch size is passed
+	 * through, which only has an effect if useCursorFetch=true is set on the
+	 * connection.
+	 */
+	@Override
+	public void configureCursor(Connection con, PreparedStatement state, Integer fetchSize) throws SQLException {
+		if (fetchSize == null) {
+			state.setFetchSize(Integer.MIN_VALUE);
+		} else {
+			state.setFetchSize(fetchSize);
+		}
+	}
+
 }
@@ -8,5 +8,7 @@ public interface PojoInfo {
 	public void putValue(Object pojo, String name, Object value, boolean ignoreIfMissing);
 	public Property getGeneratedColumnProperty();
 	public Property getProperty(String name);
+	public String getPrimaryKeyName();
+	public String getTable();
 
 }
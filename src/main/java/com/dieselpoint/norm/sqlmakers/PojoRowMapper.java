@@ -0,0 +1,78 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps rows to pojos. Each column index is resolved to its Property when the
+ * mapper is built, so mapping a row is a walk over arrays.
+ */
+class PojoRowMapper<T> implements RowMapper<T> {
+
+	private final SqlMaker sqlMaker;
+	private final StandardPojoInfo pojoInfo;
+	private final Constructor<T> constructor;
+
+	// indexed by column number - 1. A null property means the column is ignored.
+	private final Property[] props;
+	private final PrimitiveAccessor[] primitives;
+	private final String[] columnTypeNames;
+
+	PojoRowMapper(SqlMaker sqlMaker, StandardPojoInfo pojoInfo, Class<T> clazz, ResultSetMetaData meta)
+			throws SQLException {
+		this.sqlMaker = sqlMaker;
+		this.pojoInfo = pojoInfo;
+
+		try {
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException | SecurityException e) {
+			throw new DbException("Class must have a no-arg constructor: " + clazz.getName(), e);
+		}
+
+		int colCount = meta.getColumnCount();
+		props = new Property[colCount];
+		primitives = new PrimitiveAccessor[colCount];
+		columnTypeNames = new String[colCount];
+		for (int i = 0; i < colCount; i++) {
+			props[i] = pojoInfo.getProperty(meta.getColumnLabel(i + 1));
+			if (props[i] != null) {
+				primitives[i] = props[i].primitiveAccessor;
+			}
+			columnTypeNames[i] = meta.getColumnTypeName(i + 1);
+		}
+	}
+
+	@Override
+	public T mapRow(ResultSet rs) throws SQLException {
+		T row;
+		try {
+			row = constructor.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new DbException(e);
+		}
+
+		for (int i = 0; i < props.length; i++) {
+			Property prop = props[i];
+			if (prop == null) {
+				continue;
+			}
+			if (primitives[i] != null) {
+				// typed read, no boxing and no convertValue() needed
+				primitives[i].read(rs, i + 1, row);
+				continue;
+			}
+			Object colValue = rs.getObject(i + 1);
+			if (colValue != null) {
+				colValue = sqlMaker.convertValue(colValue, columnTypeNames[i]);
+				pojoInfo.putValue(row, prop, colValue);
+			}
+		}
+		return row;
+	}
+
+}
@@ -1,9 +1,18 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
 import javax.persistence.Column;
 
+import com.dieselpoint.norm.Util;
+
 public class PostgresMaker extends StandardSqlMaker {
 
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
 	@Override
 	public String getCreateTableSql(Class<?> clazz) {
 		
@@ -71,5 +80,82 @@ public class PostgresMaker extends StandardSqlMaker {
 		return buf.toString();
 	}
 
+	/**
+	 * The Postgres protocol allows 65535 bind parameters per statement, but
+	 * pgjdbc before 42.4 sends the count as a signed short, so stay under that.
+	 */
+	@Override
+	protected int getMaxBindParameters() {
+		return Short.MAX_VALUE;
+	}
+
+	@Override
+	protected String makeMultiRowInsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+		buf.append(Util.join(pojoInfo.insertColumnNames));
+		buf.append(") values ");
+		buf.append(Util.getQuestionMarkRows(pojoInfo.insertSqlArgCount, rowCount));
+		return buf.toString();
+	}
+
+	/**
+	 * Upserts with "insert ... on conflict (pk) do update set col=excluded.col",
+	 * which needs Postgres 9.5 or later and a primary key.
+	 */
+	@Override
+	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
+		if (pojoInfo.primaryKeyName == null) {
+			return;
+		}
+		makeUpsertColumnNames(pojoInfo);
+		pojoInfo.upsertSql = makeOnConflictUpsertSql(pojoInfo, 1);
+	}
+
+	@Override
+	protected String makeMultiRowUpsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		return makeOnConflictUpsertSql(pojoInfo, rowCount);
+	}
+
+	/**
+	 * Primary keys of these types can be bound as one array parameter and
+	 * matched with "= any(?)".
+	 */
+	@Override
+	public String getIdArrayType(Class<?> rowClass) {
+		StandardPojoInfo pojoInfo = getPojoInfo(rowClass);
+		if (pojoInfo.primaryKeyName == null) {
+			return null;
+		}
+		Class<?> dataType = pojoInfo.propertyMap.get(pojoInfo.primaryKeyName).dataType;
+		if (dataType.equals(Long.class) || dataType.equals(long.class)) {
+			return "int8";
+		} else if (dataType.equals(Integer.class) || dataType.equals(int.class)) {
+			return "int4";
+		} else if (dataType.equals(Short.class) || dataType.equals(short.class)) {
+			return "int2";
+		} else if (dataType.equals(String.class)) {
+			return "text";
+		} else if (dataType.equals(UUID.class)) {
+			return "uuid";
+		}
+		return null;
+	}
+
+	/**
+	 * The Postgres driver only uses a portal (server-side cursor) if autocommit is
+	 * off and the fetch size is non-zero; otherwise it reads all rows at once.
+	 * Query restores autocommit when it releases a connection that it turned off
+	 * here.
+	 */
+	@Override
+	public void configureCursor(Connection con, PreparedStatement state, Integer fetchSize) throws SQLException {
+		if (con.getAutoCommit()) {
+			con.setAutoCommit(false);
+		}
+		state.setFetchSize(fetchSize == null ? DEFAULT_FETCH_SIZE : fetchSize);
+	}
 
 }
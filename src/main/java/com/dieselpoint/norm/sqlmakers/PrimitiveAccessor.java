@@ -0,0 +1,298 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Reads and binds a primitive field using the typed JDBC methods, like
+ * rs.getInt() and state.setInt(), so the value is never boxed. Only used for
+ * fields with no serializer, converter or enum handling.
+ */
+public abstract class PrimitiveAccessor {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	protected final MethodHandle getter;
+	protected final MethodHandle setter;
+
+	private PrimitiveAccessor(MethodHandle getter, MethodHandle setter) {
+		this.getter = getter;
+		this.setter = setter;
+	}
+
+	/**
+	 * Read column col from the current row into the pojo. If the column is null
+	 * the field is left alone.
+	 */
+	public abstract void read(ResultSet rs, int col, Object pojo) throws SQLException;
+
+	/**
+	 * Bind the value of the field to parameter index of the statement.
+	 */
+	public abstract void bind(PreparedStatement state, int index, Object pojo) throws SQLException;
+
+	/**
+	 * Returns an accessor for the property, or null if the property isn't a plain
+	 * primitive field.
+	 */
+	static PrimitiveAccessor create(Property prop) {
+		Class<?> type = prop.dataType;
+		if (prop.field == null || !type.isPrimitive() || prop.serializer != null || prop.converter != null
+				|| prop.isEnumField) {
+			return null;
+		}
+
+		MethodHandle getter;
+		MethodHandle setter;
+		try {
+			getter = LOOKUP.unreflectGetter(prop.field).asType(MethodType.methodType(type, Object.class));
+			setter = LOOKUP.unreflectSetter(prop.field)
+					.asType(MethodType.methodType(void.class, Object.class, type));
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+
+		if (type == int.class) {
+			return new IntAccessor(getter, setter);
+		} else if (type == long.class) {
+			return new LongAccessor(getter, setter);
+		} else if (type == double.class) {
+			return new DoubleAccessor(getter, setter);
+		} else if (type == float.class) {
+			return new FloatAccessor(getter, setter);
+		} else if (type == boolean.class) {
+			return new BooleanAccessor(getter, setter);
+		} else if (type == short.class) {
+			return new ShortAccessor(getter, setter);
+		} else if (type == byte.class) {
+			return new ByteAccessor(getter, setter);
+		}
+		// char has no typed JDBC method
+		return null;
+	}
+
+	private static DbException fail(Throwable t) {
+		if (t instanceof DbException) {
+			return (DbException) t;
+		}
+		return new DbException(t);
+	}
+
+	private static class IntAccessor extends PrimitiveAccessor {
+		IntAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			int value = rs.getInt(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			int value;
+			try {
+				value = (int) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setInt(index, value);
+		}
+	}
+
+	private static class LongAccessor extends PrimitiveAccessor {
+		LongAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			long value = rs.getLong(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			long value;
+			try {
+				value = (long) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setLong(index, value);
+		}
+	}
+
+	private static class DoubleAccessor extends PrimitiveAccessor {
+		DoubleAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			double value = rs.getDouble(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			double value;
+			try {
+				value = (double) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setDouble(index, value);
+		}
+	}
+
+	private static class FloatAccessor extends PrimitiveAccessor {
+		FloatAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			float value = rs.getFloat(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			float value;
+			try {
+				value = (float) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setFloat(index, value);
+		}
+	}
+
+	private static class BooleanAccessor extends PrimitiveAccessor {
+		BooleanAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			boolean value = rs.getBoolean(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			boolean value;
+			try {
+				value = (boolean) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setBoolean(index, value);
+		}
+	}
+
+	private static class ShortAccessor extends PrimitiveAccessor {
+		ShortAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			short value = rs.getShort(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			short value;
+			try {
+				value = (short) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setShort(index, value);
+		}
+	}
+
+	private static class ByteAccessor extends PrimitiveAccessor {
+		ByteAccessor(MethodHandle getter, MethodHandle setter) {
+			super(getter, setter);
+		}
+
+		@Override
+		public void read(ResultSet rs, int col, Object pojo) throws SQLException {
+			byte value = rs.getByte(col);
+			if (rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(pojo, value);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement state, int index, Object pojo) throws SQLException {
+			byte value;
+			try {
+				value = (byte) getter.invokeExact(pojo);
+			} catch (Throwable t) {
+				throw fail(t);
+			}
+			state.setByte(index, value);
+		}
+	}
+
+}
@@ -2,6 +2,8 @@ package com.dieselpoint.norm.sqlmakers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Column;
@@ -13,6 +15,9 @@ import com.dieselpoint.norm.serialize.DbSerializable;
 public class Property {
 	public String name;
 	public Field field;
+	public Function<Object, Object> getter;
+	public BiConsumer<Object, Object> setter;
+	public PrimitiveAccessor primitiveAccessor;
 	public Class<?> dataType;
 	public boolean isGenerated;
 	public boolean isPrimaryKey;
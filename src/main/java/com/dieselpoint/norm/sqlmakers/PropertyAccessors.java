@@ -0,0 +1,100 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Builds the getter and setter functions for a Property. Fields are read and
+ * written through MethodHandles bound once per property, which avoids the
+ * access checks and argument copying of Field.get() and Field.set() on every
+ * call. If a handle can't be created, plain reflection is used instead.
+ * <p>
+ * A handle won't convert a value to the field's type, so the setter only
+ * passes it values that are already that type, boxed. Anything else, like an
+ * Integer for a long field, goes to Field.set(), which does the widening.
+ */
+class PropertyAccessors {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	static void apply(Property prop) {
+		Field field = prop.field;
+		try {
+			MethodHandle getter = LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+			MethodHandle setter = LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+			prop.getter = makeGetter(getter);
+			prop.setter = makeSetter(setter, field);
+		} catch (IllegalAccessException | RuntimeException e) {
+			applyReflection(prop);
+		}
+	}
+
+	/**
+	 * Use plain reflection for this property. Package-private so benchmarks can
+	 * compare the two.
+	 */
+	static void applyReflection(Property prop) {
+		prop.getter = makeReflectionGetter(prop.field);
+		prop.setter = makeReflectionSetter(prop.field);
+	}
+
+	private static Function<Object, Object> makeGetter(MethodHandle mh) {
+		return pojo -> {
+			try {
+				return (Object) mh.invokeExact(pojo);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new DbException(t);
+			}
+		};
+	}
+
+	private static BiConsumer<Object, Object> makeSetter(MethodHandle mh, Field field) {
+		Class<?> type = MethodType.methodType(field.getType()).wrap().returnType();
+		BiConsumer<Object, Object> reflectionSetter = makeReflectionSetter(field);
+		return (pojo, value) -> {
+			if (value != null && !type.isInstance(value)) {
+				reflectionSetter.accept(pojo, value);
+				return;
+			}
+			try {
+				mh.invokeExact(pojo, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new DbException(t);
+			}
+		};
+	}
+
+	private static Function<Object, Object> makeReflectionGetter(Field field) {
+		return pojo -> {
+			try {
+				return field.get(pojo);
+			} catch (IllegalAccessException e) {
+				throw new DbException(e);
+			}
+		};
+	}
+
+	private static BiConsumer<Object, Object> makeReflectionSetter(Field field) {
+		return (pojo, value) -> {
+			try {
+				field.set(pojo, value);
+			} catch (IllegalAccessException e) {
+				throw new DbException(e);
+			}
+		};
+	}
+
+}
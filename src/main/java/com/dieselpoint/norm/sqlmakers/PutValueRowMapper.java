@@ -0,0 +1,62 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps rows to pojos by column label through PojoInfo.putValue(), for
+ * SqlMakers that don't supply their own getRowMapper().
+ */
+class PutValueRowMapper<T> implements RowMapper<T> {
+
+	private final SqlMaker sqlMaker;
+	private final PojoInfo pojoInfo;
+	private final Constructor<T> constructor;
+	private final String[] labels;
+	private final String[] columnTypeNames;
+
+	PutValueRowMapper(SqlMaker sqlMaker, PojoInfo pojoInfo, Class<T> clazz, ResultSetMetaData meta)
+			throws SQLException {
+		this.sqlMaker = sqlMaker;
+		this.pojoInfo = pojoInfo;
+
+		try {
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException | SecurityException e) {
+			throw new DbException("Class must have a no-arg constructor: " + clazz.getName(), e);
+		}
+
+		int colCount = meta.getColumnCount();
+		labels = new String[colCount];
+		columnTypeNames = new String[colCount];
+		for (int i = 0; i < colCount; i++) {
+			labels[i] = meta.getColumnLabel(i + 1);
+			columnTypeNames[i] = meta.getColumnTypeName(i + 1);
+		}
+	}
+
+	@Override
+	public T mapRow(ResultSet rs) throws SQLException {
+		T row;
+		try {
+			row = constructor.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new DbException(e);
+		}
+
+		for (int i = 0; i < labels.length; i++) {
+			Object colValue = rs.getObject(i + 1);
+			if (colValue != null) {
+				colValue = sqlMaker.convertValue(colValue, columnTypeNames[i]);
+			}
+			pojoInfo.putValue(row, labels[i], colValue, true);
+		}
+		return row;
+	}
+
+}
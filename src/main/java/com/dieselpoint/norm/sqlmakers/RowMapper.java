@@ -0,0 +1,14 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to an object. A RowMapper is built once
+ * for a given target class and result set shape, so it must not depend on
+ * anything but the ResultSet it is handed. Get one from
+ * SqlMaker.getRowMapper().
+ */
+public interface RowMapper<T> {
+	public T mapRow(ResultSet rs) throws SQLException;
+}
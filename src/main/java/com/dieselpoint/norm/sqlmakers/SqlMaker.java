@@ -1,11 +1,20 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
 import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.Util;
 
 
 
 public interface SqlMaker {
-	
+
 	public String getInsertSql(Query query, Object row);
 	public Object[] getInsertArgs(Query query, Object row);
 
@@ -18,12 +27,164 @@ public interface SqlMaker {
 
 	public String getUpsertSql(Query query, Object row);
 	public Object[] getUpsertArgs(Query query, Object row);
-	
+
+	/*
+	 * These bind the same values that the get...Args() methods return directly
+	 * to the statement. The defaults call get...Args(); StandardSqlMaker binds
+	 * without building an Object[] and without boxing primitive fields.
+	 */
+	public default void bindInsertArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		Args.bind(state, getInsertArgs(query, row));
+	}
+
+	public default void bindUpdateArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		Args.bind(state, getUpdateArgs(query, row));
+	}
+
+	public default void bindDeleteArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		Args.bind(state, getDeleteArgs(query, row));
+	}
+
+	public default void bindUpsertArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		Args.bind(state, getUpsertArgs(query, row));
+	}
+
+	/**
+	 * Returns sql that updates only some columns of a row by primary key. Bit i
+	 * of changed stands for the i-th value returned by getUpdateArgs(). The
+	 * default updates every column.
+	 */
+	public default String getPartialUpdateSql(Query query, Object row, BitSet changed) {
+		return getUpdateSql(query, row);
+	}
+
+	/**
+	 * Bind the args for getPartialUpdateSql().
+	 */
+	public default void bindPartialUpdateArgs(Query query, Object row, BitSet changed, PreparedStatement state)
+			throws SQLException {
+		bindUpdateArgs(query, row, state);
+	}
+
+	/**
+	 * Returns the maximum number of rows of this class that can go in one
+	 * multi-row insert or upsert statement, or 0 if multi-row statements aren't
+	 * supported. The default is 0, so bulk writes use JDBC batches.
+	 */
+	public default int getMultiRowLimit(Class<?> rowClass) {
+		return 0;
+	}
+
+	/**
+	 * Returns sql that inserts rowCount rows in one statement, like
+	 * "insert into t (a,b) values (?,?),(?,?)".
+	 */
+	public default String getMultiRowInsertSql(Query query, Object row, int rowCount) {
+		return null;
+	}
+
+	/**
+	 * Returns sql that upserts rowCount rows in one statement, or null if not
+	 * supported.
+	 */
+	public default String getMultiRowUpsertSql(Query query, Object row, int rowCount) {
+		return null;
+	}
+
+	/**
+	 * Bind the args for a multi-row insert or upsert of these rows. The
+	 * defaults bind each row's get...Args() in turn, following on from the
+	 * previous row's parameters.
+	 */
+	public default void bindMultiRowInsertArgs(Query query, List<?> rows, PreparedStatement state)
+			throws SQLException {
+		int offset = 0;
+		for (Object row : rows) {
+			offset = Args.bind(state, offset, getInsertArgs(query, row));
+		}
+	}
+
+	public default void bindMultiRowUpsertArgs(Query query, List<?> rows, PreparedStatement state)
+			throws SQLException {
+		int offset = 0;
+		for (Object row : rows) {
+			offset = Args.bind(state, offset, getUpsertArgs(query, row));
+		}
+	}
+
 	public String getSelectSql(Query query, Class<?> rowClass);
+
+	/**
+	 * Returns sql that selects a single constant row if the query has any rows,
+	 * like "select 1 from t where ... limit 1". rowClass supplies the table if
+	 * the query doesn't name one, and may be null if it does. The default wraps
+	 * the select sql.
+	 */
+	public default String getExistsSql(Query query, Class<?> rowClass) {
+		String select = query.getSql() != null ? query.getSql() : getSelectSql(query, rowClass);
+		return "select 1 from (" + select + ") q limit 1";
+	}
+
+	/**
+	 * Returns sql that counts the query's rows, like "select count(*) from t
+	 * where ...". The default wraps the select sql.
+	 */
+	public default String getCountSql(Query query, Class<?> rowClass) {
+		String select = query.getSql() != null ? query.getSql() : getSelectSql(query, rowClass);
+		return "select count(*) from (" + select + ") q";
+	}
+
+	/**
+	 * Returns the sql type name to pass to Connection.createArrayOf() for an
+	 * array of rowClass's primary keys, or null if this flavor of sql can't
+	 * compare a column to a single array parameter with "= any(?)".
+	 */
+	public default String getIdArrayType(Class<?> rowClass) {
+		return null;
+	}
+
+	/**
+	 * Returns sql that creates a temporary table, visible only to the current
+	 * connection, with one column of the same type as rowClass's primary key.
+	 * The sql must not fail if the table already exists. Returns null if this
+	 * flavor of sql can't do it.
+	 */
+	public default String getCreateIdTableSql(Class<?> rowClass, String table, String column) {
+		return null;
+	}
+
 	public String getCreateTableSql(Class<?> clazz);
-	
+
 	public PojoInfo getPojoInfo(Class<?> rowClass);
 
+	/**
+	 * Returns a mapper that turns rows of the given shape into instances of
+	 * rowClass. Implementations should cache mappers, because this is called for
+	 * every query. The default builds a new one each time that fills pojos with
+	 * PojoInfo.putValue().
+	 */
+	public default <T> RowMapper<T> getRowMapper(Class<T> rowClass, ResultSetMetaData meta) throws SQLException {
+		if (Map.class.isAssignableFrom(rowClass)) {
+			return new MapRowMapper<T>(rowClass, meta);
+		}
+		if (Util.isPrimitiveOrString(rowClass) || rowClass.getPackage().getName().startsWith("java.sql")) {
+			return new ColumnRowMapper<T>(this, meta);
+		}
+		return new PutValueRowMapper<T>(this, getPojoInfo(rowClass), rowClass, meta);
+	}
+
 	public Object convertValue(Object value, String columnTypeName);
 
+	/**
+	 * Set up a statement so that its results are fetched from the server a few
+	 * rows at a time rather than all at once. Called before the statement is
+	 * executed. fetchSize is null if the query did not specify one.
+	 */
+	public default void configureCursor(Connection con, PreparedStatement state, Integer fetchSize)
+			throws SQLException {
+		if (fetchSize != null) {
+			state.setFetchSize(fetchSize);
+		}
+	}
+
 }
@@ -0,0 +1,106 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import javax.persistence.Column;
+
+import com.dieselpoint.norm.Util;
+
+/**
+ * Produces sql for SQLite. Upserts use "insert ... on conflict (pk) do update",
+ * which needs SQLite 3.24 or later.
+ */
+public class SqliteMaker extends StandardSqlMaker {
+
+	/**
+	 * SQLITE_MAX_VARIABLE_NUMBER defaults to 999 before SQLite 3.32.
+	 */
+	@Override
+	protected int getMaxBindParameters() {
+		return 999;
+	}
+
+	@Override
+	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
+		if (pojoInfo.primaryKeyName == null) {
+			return;
+		}
+		makeUpsertColumnNames(pojoInfo);
+		pojoInfo.upsertSql = makeOnConflictUpsertSql(pojoInfo, 1);
+	}
+
+	@Override
+	protected String makeMultiRowInsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+		buf.append(Util.join(pojoInfo.insertColumnNames));
+		buf.append(") values ");
+		buf.append(Util.getQuestionMarkRows(pojoInfo.insertSqlArgCount, rowCount));
+		return buf.toString();
+	}
+
+	@Override
+	protected String makeMultiRowUpsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		return makeOnConflictUpsertSql(pojoInfo, rowCount);
+	}
+
+	/**
+	 * SQLite has no auto_increment. A generated primary key has to be declared
+	 * inline as "integer primary key autoincrement".
+	 */
+	@Override
+	public String getCreateTableSql(Class<?> clazz) {
+
+		StringBuilder buf = new StringBuilder();
+
+		StandardPojoInfo pojoInfo = getPojoInfo(clazz);
+		buf.append("create table if not exists ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+
+		boolean inlinePrimaryKey = false;
+		boolean needsComma = false;
+		for (Property prop : pojoInfo.propertyMap.values()) {
+
+			if (needsComma) {
+				buf.append(',');
+			}
+			needsComma = true;
+
+			buf.append(prop.name);
+			buf.append(" ");
+
+			if (prop.isGenerated && prop.isPrimaryKey) {
+				buf.append("integer primary key autoincrement");
+				inlinePrimaryKey = true;
+				continue;
+			}
+
+			Column columnAnnot = prop.columnAnnotation;
+			if (columnAnnot == null) {
+				buf.append(getColType(prop.dataType, 255, 10, 2));
+			} else {
+				buf.append(getColType(prop.dataType, columnAnnot.length(), columnAnnot.precision(), columnAnnot.scale()));
+
+				if (columnAnnot.unique()) {
+					buf.append(" unique");
+				}
+
+				if (!columnAnnot.nullable()) {
+					buf.append(" not null");
+				}
+			}
+		}
+
+		if (pojoInfo.primaryKeyName != null && !inlinePrimaryKey) {
+			buf.append(", primary key (");
+			buf.append(pojoInfo.primaryKeyName);
+			buf.append(")");
+		}
+
+		buf.append(")");
+
+		return buf.toString();
+	}
+
+}
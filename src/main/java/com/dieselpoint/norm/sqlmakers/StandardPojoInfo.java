@@ -17,10 +17,14 @@ import java.beans.IntrospectionException;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides means of reading and writing properties in a pojo.
@@ -41,13 +45,21 @@ public class StandardPojoInfo implements PojoInfo {
 	public String insertSql;
 	public int insertSqlArgCount;
 	public String [] insertColumnNames;
+	public Property [] insertProperties;
+
+	// multi-row sql, keyed by number of rows
+	public ConcurrentHashMap<Integer, String> multiRowInsertSql = new ConcurrentHashMap<>();
+	public ConcurrentHashMap<Integer, String> multiRowUpsertSql = new ConcurrentHashMap<>();
+	public ConcurrentHashMap<BitSet, String> partialUpdateSql = new ConcurrentHashMap<>();
 
 	public String upsertSql;
 	public int upsertSqlArgCount;
 	public String [] upsertColumnNames;
+	public Property [] upsertProperties;
 	
 	public String updateSql;
 	public String[] updateColumnNames;
+	public Property[] updateProperties;
 	public int updateSqlArgCount;
 	
 	public String selectColumns;
@@ -122,8 +134,10 @@ public class StandardPojoInfo implements PojoInfo {
 			prop.field = field;
 			prop.field.setAccessible(true);
 			prop.dataType = field.getType();
+			PropertyAccessors.apply(prop);
 
 			applyAnnotations(prop, field);
+			prop.primitiveAccessor = PrimitiveAccessor.create(prop);
 
 			props.add(prop);
 		}
@@ -184,16 +198,26 @@ public class StandardPojoInfo implements PojoInfo {
 
 	public Object getValue(Object pojo, String name) {
 
-		try {
+		Property prop = propertyMap.get(name);
+		if (prop == null) {
+			throw new DbException("No such field: " + name);
+		}
 
-			Property prop = propertyMap.get(name);
-			if (prop == null) {
-				throw new DbException("No such field: " + name);
-			}
+		return getValue(pojo, prop);
+	}
+
+	/**
+	 * Get a value from a pojo using a Property that has already been looked up.
+	 */
+	public Object getValue(Object pojo, Property prop) {
+
+		try {
 
 			Object value = null;
 			
-			if (prop.field != null) {
+			if (prop.getter != null) {
+				value = prop.getter.apply(pojo);
+			} else if (prop.field != null) {
 				value = prop.field.get(pojo);
 			}
 
@@ -223,6 +247,36 @@ public class StandardPojoInfo implements PojoInfo {
 		}
 	}
 
+	/**
+	 * Bind the value of a property to a statement parameter. Plain primitive
+	 * fields are bound with the typed setters and never boxed.
+	 */
+	public void bindValue(PreparedStatement state, int index, Property prop, Object pojo) throws SQLException {
+		if (prop.primitiveAccessor != null) {
+			prop.primitiveAccessor.bind(state, index, pojo);
+			return;
+		}
+
+		Object value = getValue(pojo, prop);
+
+		// same as in Query.execute(), Postgres drivers don't handle List args
+		if (value instanceof List) {
+			value = ((List<?>) value).toArray();
+		}
+		state.setObject(index, value);
+	}
+
+	/**
+	 * Look up the properties with the given names, in order.
+	 */
+	public Property[] getProperties(String[] names) {
+		Property[] props = new Property[names.length];
+		for (int i = 0; i < names.length; i++) {
+			props[i] = propertyMap.get(names[i]);
+		}
+		return props;
+	}
+
 	public void putValue(Object pojo, String name, Object value) {
 		putValue(pojo, name, value, false);
 	}
@@ -237,6 +291,14 @@ public class StandardPojoInfo implements PojoInfo {
 			throw new DbException("No such field: " + name);
 		}
 
+		putValue(pojo, prop, value);
+	}
+
+	/**
+	 * Put a value into a pojo using a Property that has already been looked up.
+	 */
+	public void putValue(Object pojo, Property prop, Object value) {
+
 		if (value == null) return;
 
 		if (prop.serializer != null) {
@@ -249,6 +311,15 @@ public class StandardPojoInfo implements PojoInfo {
 			value = getEnumConst(prop.enumClass, prop.enumType, value);
 		}
 
+		if (prop.setter != null) {
+			try {
+				prop.setter.accept(pojo, value);
+			} catch (IllegalArgumentException e) {
+				throw new DbException("Could not set value into pojo. Field: " + prop.field.toString() + " value: " + value, e);
+			}
+			return;
+		}
+
 		if (prop.field != null) {
 			try {
 				prop.field.set(pojo, value);
@@ -286,6 +357,16 @@ public class StandardPojoInfo implements PojoInfo {
 		return propertyMap.get(generatedColumnName);
 	}
 
+	@Override
+	public String getPrimaryKeyName() {
+		return primaryKeyName;
+	}
+
+	@Override
+	public String getTable() {
+		return table;
+	}
+
 	@Override
 	public Property getProperty(String name) {
 		return propertyMap.get(name);
@@ -6,7 +6,12 @@ import com.dieselpoint.norm.Util;
 
 import javax.persistence.Column;
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -16,23 +21,123 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class StandardSqlMaker implements SqlMaker {
 
-	private static ConcurrentHashMap<Class<?>, StandardPojoInfo> map = new ConcurrentHashMap<Class<?>, StandardPojoInfo>();
+	// pojo infos hold sql for a particular flavor, so each maker class gets its own map
+	private static ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, StandardPojoInfo>> maps = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, StandardPojoInfo>>();
+	private ConcurrentHashMap<Class<?>, StandardPojoInfo> map = maps.computeIfAbsent(getClass(), c -> new ConcurrentHashMap<Class<?>, StandardPojoInfo>());
+
+	private static final String NO_UPSERT =
+			"There's no standard upsert implemention. There are ones for MySql, Postgres, H2 and SQLite, though, "
+			+ "so call Database.setSqlMaker(new MySqlMaker()) or the maker for your database. Or roll your own. "
+			+ "Upserts other than MySql's also need a primary key, set with the @Id annotation.";
+
+	/*
+	 * Set when a subclass overrides a get...Args() method but not the matching
+	 * bind...Args(), so that binding goes through the override. Partial updates
+	 * and multi-row statements are turned off for the same rows.
+	 */
+	private final boolean insertArgsOverridden = isOverriddenAlone("getInsertArgs", "bindInsertArgs");
+	private final boolean updateArgsOverridden = isOverriddenAlone("getUpdateArgs", "bindUpdateArgs");
+	private final boolean deleteArgsOverridden = isOverriddenAlone("getDeleteArgs", "bindDeleteArgs");
+	private final boolean upsertArgsOverridden = isOverriddenAlone("getUpsertArgs", "bindUpsertArgs");
+
+	// not static, because the mappers depend on convertValue()
+	private ConcurrentHashMap<RowShape, RowMapper<?>> rowMappers = new ConcurrentHashMap<RowShape, RowMapper<?>>();
 
 	public StandardPojoInfo getPojoInfo(Class<?> rowClass) {
 		StandardPojoInfo pi = map.get(rowClass);
 		if (pi == null) {
 			pi = new StandardPojoInfo(rowClass);
-			map.put(rowClass, pi);
 			
 			makeInsertSql(pi);
 			makeUpsertSql(pi);
 			makeUpdateSql(pi);
 			makeSelectColumns(pi);
+
+			pi.insertProperties = pi.getProperties(pi.insertColumnNames);
+			pi.updateProperties = pi.getProperties(pi.updateColumnNames);
+			if (pi.upsertColumnNames != null) {
+				pi.upsertProperties = pi.getProperties(pi.upsertColumnNames);
+			}
+
+			// publish only when complete, so other threads never see a half-built one
+			map.put(rowClass, pi);
 		}
 		return pi;
 	}
 	
 	
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> RowMapper<T> getRowMapper(Class<T> rowClass, ResultSetMetaData meta) throws SQLException {
+		RowShape shape = new RowShape(rowClass, meta);
+		RowMapper<T> mapper = (RowMapper<T>) rowMappers.get(shape);
+		if (mapper == null) {
+			mapper = makeRowMapper(rowClass, meta);
+			rowMappers.put(shape, mapper);
+		}
+		return mapper;
+	}
+
+	/**
+	 * Build a new mapper for the given class and result set shape. Override this
+	 * to customize how rows are mapped.
+	 */
+	protected <T> RowMapper<T> makeRowMapper(Class<T> rowClass, ResultSetMetaData meta) throws SQLException {
+		if (Map.class.isAssignableFrom(rowClass)) {
+			return new MapRowMapper<T>(rowClass, meta);
+		}
+		if (Util.isPrimitiveOrString(rowClass) || rowClass.getPackage().getName().startsWith("java.sql")) {
+			return new ColumnRowMapper<T>(this, meta);
+		}
+		return new PojoRowMapper<T>(this, getPojoInfo(rowClass), rowClass, meta);
+	}
+
+	/**
+	 * Key for the row mapper cache: the target class plus the label and type of
+	 * each column.
+	 */
+	private static class RowShape {
+		private final Class<?> rowClass;
+		private final String[] columns;
+		private final int hash;
+
+		RowShape(Class<?> rowClass, ResultSetMetaData meta) throws SQLException {
+			this.rowClass = rowClass;
+			int colCount = meta.getColumnCount();
+			columns = new String[colCount * 2];
+			for (int i = 0; i < colCount; i++) {
+				columns[i * 2] = meta.getColumnLabel(i + 1);
+				columns[i * 2 + 1] = meta.getColumnTypeName(i + 1);
+			}
+			hash = 31 * rowClass.hashCode() + Arrays.hashCode(columns);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof RowShape)) {
+				return false;
+			}
+			RowShape other = (RowShape) obj;
+			return rowClass == other.rowClass && Arrays.equals(columns, other.columns);
+		}
+	}
+
+	private boolean isOverriddenAlone(String getArgs, String bindArgs) {
+		try {
+			Class<?> getter = getClass().getMethod(getArgs, Query.class, Object.class).getDeclaringClass();
+			Class<?> binder = getClass().getMethod(bindArgs, Query.class, Object.class, PreparedStatement.class)
+					.getDeclaringClass();
+			return getter != binder && binder.isAssignableFrom(getter);
+		} catch (NoSuchMethodException e) {
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public String getInsertSql(Query query, Object row) {
 		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
@@ -75,6 +180,185 @@ public class StandardSqlMaker implements SqlMaker {
 
 
 
+	@Override
+	public void bindInsertArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		if (insertArgsOverridden) {
+			SqlMaker.super.bindInsertArgs(query, row, state);
+			return;
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		Property[] props = pojoInfo.insertProperties;
+		for (int i = 0; i < props.length; i++) {
+			pojoInfo.bindValue(state, i + 1, props[i], row);
+		}
+	}
+
+	@Override
+	public void bindUpdateArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		if (updateArgsOverridden) {
+			SqlMaker.super.bindUpdateArgs(query, row, state);
+			return;
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		Property[] props = pojoInfo.updateProperties;
+		for (int i = 0; i < props.length; i++) {
+			pojoInfo.bindValue(state, i + 1, props[i], row);
+		}
+		// add the value for the where clause to the end
+		Property pk = pojoInfo.getProperty(pojoInfo.primaryKeyName);
+		pojoInfo.bindValue(state, props.length + 1, pk, row);
+	}
+
+	@Override
+	public String getPartialUpdateSql(Query query, Object row, BitSet changed) {
+		if (updateArgsOverridden) {
+			return getUpdateSql(query, row);
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.primaryKeyName == null) {
+			throw new DbException("No primary key specified in the row. Use the @Id annotation.");
+		}
+		String sql = pojoInfo.partialUpdateSql.get(changed);
+		if (sql == null) {
+			StringBuilder buf = new StringBuilder();
+			buf.append("update ");
+			buf.append(pojoInfo.table);
+			buf.append(" set ");
+			boolean first = true;
+			for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+				if (!first) {
+					buf.append(',');
+				}
+				first = false;
+				buf.append(pojoInfo.updateColumnNames[i] + "=?");
+			}
+			buf.append(" where " + pojoInfo.primaryKeyName + "=?");
+			sql = buf.toString();
+			pojoInfo.partialUpdateSql.putIfAbsent((BitSet) changed.clone(), sql);
+		}
+		return sql;
+	}
+
+	@Override
+	public void bindPartialUpdateArgs(Query query, Object row, BitSet changed, PreparedStatement state)
+			throws SQLException {
+		if (updateArgsOverridden) {
+			bindUpdateArgs(query, row, state);
+			return;
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		Property[] props = pojoInfo.updateProperties;
+		int index = 1;
+		for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+			pojoInfo.bindValue(state, index++, props[i], row);
+		}
+		Property pk = pojoInfo.getProperty(pojoInfo.primaryKeyName);
+		pojoInfo.bindValue(state, index, pk, row);
+	}
+
+	@Override
+	public void bindDeleteArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		if (deleteArgsOverridden) {
+			SqlMaker.super.bindDeleteArgs(query, row, state);
+			return;
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		Property pk = pojoInfo.getProperty(pojoInfo.primaryKeyName);
+		if (pk == null) {
+			throw new DbException("No primary key specified in the row. Use the @Id annotation.");
+		}
+		pojoInfo.bindValue(state, 1, pk, row);
+	}
+
+	@Override
+	public void bindUpsertArgs(Query query, Object row, PreparedStatement state) throws SQLException {
+		if (upsertArgsOverridden) {
+			SqlMaker.super.bindUpsertArgs(query, row, state);
+			return;
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.upsertSql == null) {
+			throw new UnsupportedOperationException(NO_UPSERT);
+		}
+		Property[] props = pojoInfo.upsertProperties;
+		for (int i = 0; i < props.length; i++) {
+			pojoInfo.bindValue(state, i + 1, props[i], row);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of bind parameters the driver allows in one
+	 * statement, or 0 if this flavor of sql doesn't do multi-row statements.
+	 * Subclasses that override this must also override makeMultiRowInsertSql().
+	 */
+	protected int getMaxBindParameters() {
+		return 0;
+	}
+
+	@Override
+	public int getMultiRowLimit(Class<?> rowClass) {
+		int max = getMaxBindParameters();
+		if (max <= 0 || insertArgsOverridden || upsertArgsOverridden) {
+			return 0;
+		}
+		StandardPojoInfo pojoInfo = getPojoInfo(rowClass);
+		int argCount = Math.max(pojoInfo.insertSqlArgCount, pojoInfo.upsertSqlArgCount);
+		if (argCount == 0) {
+			return 0;
+		}
+		return max / argCount;
+	}
+
+	@Override
+	public String getMultiRowInsertSql(Query query, Object row, int rowCount) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		return pojoInfo.multiRowInsertSql.computeIfAbsent(rowCount, n -> makeMultiRowInsertSql(pojoInfo, n));
+	}
+
+	@Override
+	public String getMultiRowUpsertSql(Query query, Object row, int rowCount) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		return pojoInfo.multiRowUpsertSql.computeIfAbsent(rowCount, n -> makeMultiRowUpsertSql(pojoInfo, n));
+	}
+
+	@Override
+	public void bindMultiRowInsertArgs(Query query, List<?> rows, PreparedStatement state) throws SQLException {
+		int index = 1;
+		for (Object row : rows) {
+			StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+			for (Property prop : pojoInfo.insertProperties) {
+				pojoInfo.bindValue(state, index++, prop, row);
+			}
+		}
+	}
+
+	@Override
+	public void bindMultiRowUpsertArgs(Query query, List<?> rows, PreparedStatement state) throws SQLException {
+		int index = 1;
+		for (Object row : rows) {
+			StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+			for (Property prop : pojoInfo.upsertProperties) {
+				pojoInfo.bindValue(state, index++, prop, row);
+			}
+		}
+	}
+
+	/**
+	 * Make the sql to insert rowCount rows in one statement. Returns null here;
+	 * flavors that support it override this.
+	 */
+	protected String makeMultiRowInsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		return null;
+	}
+
+	/**
+	 * Make the sql to upsert rowCount rows in one statement, taking the values of
+	 * upsertColumnNames for each row. Returns null if not supported.
+	 */
+	protected String makeMultiRowUpsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		return null;
+	}
+
 	public void makeUpdateSql(StandardPojoInfo pojoInfo) {
 		
 		ArrayList<String> cols = new ArrayList<String>();
@@ -134,9 +418,71 @@ public class StandardSqlMaker implements SqlMaker {
 		pojoInfo.insertSql = buf.toString();
 	}
 
+	/**
+	 * There's no standard upsert, so this does nothing. Flavors that have one
+	 * override this to set upsertSql, upsertColumnNames and upsertSqlArgCount.
+	 */
 	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
 	}
 
+	/**
+	 * Set the columns used in an upsert: all of them except generated ones that
+	 * aren't part of the primary key.
+	 */
+	protected void makeUpsertColumnNames(StandardPojoInfo pojoInfo) {
+		ArrayList<String> cols = new ArrayList<>();
+		for (Property prop: pojoInfo.propertyMap.values()) {
+			if (prop.isGenerated && !prop.isPrimaryKey) {
+				continue;
+			}
+			cols.add(prop.name);
+		}
+		pojoInfo.upsertColumnNames = cols.toArray(new String[0]);
+		pojoInfo.upsertSqlArgCount = pojoInfo.upsertColumnNames.length;
+	}
+
+	/**
+	 * Make an upsert of the form "insert into t (...) values (...) on conflict
+	 * (pk) do update set col=excluded.col, ...", which Postgres and SQLite
+	 * support. Returns null if there is no primary key.
+	 */
+	protected String makeOnConflictUpsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		if (pojoInfo.primaryKeyName == null || pojoInfo.upsertColumnNames == null) {
+			return null;
+		}
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into ");
+		buf.append(pojoInfo.table);
+		buf.append(" (");
+		buf.append(Util.join(pojoInfo.upsertColumnNames));
+		buf.append(") values ");
+		buf.append(Util.getQuestionMarkRows(pojoInfo.upsertSqlArgCount, rowCount));
+		buf.append(" on conflict (");
+		buf.append(pojoInfo.primaryKeyName);
+		buf.append(")");
+
+		boolean first = true;
+		for (String colName : pojoInfo.upsertColumnNames) {
+			if (colName.equals(pojoInfo.primaryKeyName)) {
+				continue;
+			}
+			if (first) {
+				buf.append(" do update set ");
+				first = false;
+			} else {
+				buf.append(',');
+			}
+			buf.append(colName).append("=excluded.").append(colName);
+		}
+		if (first) {
+			// nothing but the key
+			buf.append(" do nothing");
+		}
+
+		return buf.toString();
+	}
+
 
 	private void makeSelectColumns(StandardPojoInfo pojoInfo) {
 		if (pojoInfo.propertyMap.isEmpty()) {
@@ -164,14 +510,22 @@ public class StandardSqlMaker implements SqlMaker {
 			columns = pojoInfo.selectColumns;
 		}
 
-		String orderBy = query.getOrderBy();
-		Integer limit = query.getLimit();
-		Integer offset = query.getOffset();
-		
 		StringBuilder out = new StringBuilder();
 		out.append("select ");
 		out.append(columns);
-		out.append(getClauseSql(query));
+		appendClauseSql(query, out);
+		appendPageSql(query, out);
+
+		return out.toString();
+	}
+
+	/**
+	 * Append the order by, limit and offset clauses of the query.
+	 */
+	private void appendPageSql(Query query, StringBuilder out) {
+		String orderBy = query.getOrderBy();
+		Integer limit = query.getLimit();
+		Integer offset = query.getOffset();
 
 		if (orderBy != null) {
 			out.append(" order by ");
@@ -187,11 +541,81 @@ public class StandardSqlMaker implements SqlMaker {
 			out.append(" offset ");
 			out.append(offset.toString());
 		}
+	}
+
+	@Override
+	public String getExistsSql(Query query, Class<?> rowClass) {
+		StringBuilder out = new StringBuilder();
+		out.append("select 1");
+		appendSourceSql(query, rowClass, out);
+		out.append(" limit 1");
+		return out.toString();
+	}
 
+	@Override
+	public String getCountSql(Query query, Class<?> rowClass) {
+		StringBuilder out = new StringBuilder();
+		out.append("select count(*)");
+		appendSourceSql(query, rowClass, out);
 		return out.toString();
 	}
 
+	@Override
+	public String getCreateIdTableSql(Class<?> rowClass, String table, String column) {
+		return "create temporary table if not exists " + table + " (" + column + " "
+				+ getIdColType(getPojoInfo(rowClass)) + " primary key)";
+	}
+
+	/**
+	 * Returns the column type of the primary key, or throws if there isn't one.
+	 */
+	protected String getIdColType(StandardPojoInfo pojoInfo) {
+		if (pojoInfo.primaryKeyName == null) {
+			throw new DbException("No primary key on table " + pojoInfo.table);
+		}
+		Property prop = pojoInfo.propertyMap.get(pojoInfo.primaryKeyName);
+		Column columnAnnot = prop.columnAnnotation;
+		if (columnAnnot == null) {
+			return getColType(prop.dataType, 255, 10, 2);
+		}
+		return getColType(prop.dataType, columnAnnot.length(), columnAnnot.precision(), columnAnnot.scale());
+	}
+
+	/**
+	 * Append the from and where clauses of the query, or, if it was written with
+	 * .sql(), its sql as a derived table. If the query has a limit or offset, the
+	 * rows it selects become a derived table too, so they are what gets counted.
+	 */
+	private void appendSourceSql(Query query, Class<?> rowClass, StringBuilder out) {
+		if (query.getSql() != null) {
+			out.append(" from (");
+			out.append(query.getSql());
+			out.append(") q");
+			return;
+		}
+		if (query.getTable() == null) {
+			if (rowClass == null) {
+				throw new DbException("Specify a table with .table() or pass a row class");
+			}
+			query.setPojoInfo(getPojoInfo(rowClass));
+		}
+		if (query.getLimit() == null && query.getOffset() == null) {
+			appendClauseSql(query, out);
+			return;
+		}
+		out.append(" from (select 1");
+		appendClauseSql(query, out);
+		appendPageSql(query, out);
+		out.append(") q");
+	}
+
 	private String getClauseSql(Query query) {
+		StringBuilder out = new StringBuilder();
+		appendClauseSql(query, out);
+		return out.toString();
+	}
+
+	private void appendClauseSql(Query query, StringBuilder out) {
 		String table = query.getTable();
 		if (table == null)
 			table = ((StandardPojoInfo) query.getPojoInfo()).table;
@@ -200,39 +624,32 @@ public class StandardSqlMaker implements SqlMaker {
 		Map<String, List<String>> joinTables = query.getJoinTables();
 		List<String> where = query.getWhere();
 
-		StringBuilder out = new StringBuilder();
 		out.append(" from ");
 		out.append(table);
 
 		if (joinTables != null) {
-			for (String joinTable : joinTables.keySet()) {
+			for (Map.Entry<String, List<String>> entry : joinTables.entrySet()) {
 				out.append(" ");
 				out.append(joinType);
 				out.append(" join ");
-				out.append(joinTable);
+				out.append(entry.getKey());
 				out.append(" on ");
-
-				for (String joinClause : joinTables.get(joinTable)) {
-					out.append(joinClause);
-
-					if (joinTables.get(joinTable).indexOf(joinClause) < joinTables.get(joinTable).size() - 1)
-						out.append(" and ");
-				}
+				appendJoined(entry.getValue(), out);
 			}
 		}
 
 		if (where != null && where.size() > 0) {
 			out.append(" where ");
-
-			for (String clause : where) {
-				out.append(clause);
-
-				if (where.indexOf(clause) < where.size() - 1)
-					out.append(" and ");
-			}
+			appendJoined(where, out);
 		}
+	}
 
-		return out.toString();
+	private static void appendJoined(List<String> clauses, StringBuilder out) {
+		for (int i = 0; i < clauses.size(); i++) {
+			if (i > 0)
+				out.append(" and ");
+			out.append(clauses.get(i));
+		}
 	}
 
 
@@ -371,15 +788,24 @@ public class StandardSqlMaker implements SqlMaker {
 
 	@Override
 	public String getUpsertSql(Query query, Object row) {
-		String msg =
-				"There's no standard upsert implemention. There is one in the MySql driver, though,"
-				+ "so if you're using MySql, call Database.setSqlMaker(new MySqlMaker()); Or roll your own.";
-		throw new UnsupportedOperationException(msg);
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.upsertSql == null) {
+			throw new UnsupportedOperationException(NO_UPSERT);
+		}
+		return pojoInfo.upsertSql;
 	}
 
 	@Override
 	public Object[] getUpsertArgs(Query query, Object row) {
-		throw new UnsupportedOperationException();
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.upsertSql == null) {
+			throw new UnsupportedOperationException(NO_UPSERT);
+		}
+		Object [] args = new Object[pojoInfo.upsertSqlArgCount];
+		for (int i = 0; i < pojoInfo.upsertSqlArgCount; i++) {
+			args[i] = pojoInfo.getValue(row, pojoInfo.upsertColumnNames[i]);
+		}
+		return args;
 	}
 
 }
@@ -0,0 +1,60 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Shared setup for the tests that run against an in-memory H2 database.
+ */
+public class H2Fixture {
+
+	public static final String TABLE = "testrow";
+
+	/**
+	 * Open an in-memory database. It outlives the Database object, so give each
+	 * test class its own name.
+	 */
+	public static Database open(String name) {
+		Database db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;database_to_upper=false");
+		return db;
+	}
+
+	/**
+	 * Drop the table for rowClass, which may be left over from an earlier test,
+	 * and create it again.
+	 */
+	public static void createTable(Database db, Class<?> rowClass) {
+		db.sql("drop table if exists " + db.getSqlMaker().getPojoInfo(rowClass).getTable()).execute();
+		db.createTable(rowClass);
+	}
+
+	/**
+	 * Returns count rows with ids from 0 up. Their names run "name0",
+	 * "name1", ... and start over every nameCount rows.
+	 */
+	public static List<Row> rows(int count, int nameCount) {
+		List<Row> rows = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			rows.add(row(i, "name" + (i % nameCount)));
+		}
+		return rows;
+	}
+
+	public static Row row(long id, String name) {
+		Row row = new Row();
+		row.id = id;
+		row.name = name;
+		return row;
+	}
+
+	@Table(name = TABLE)
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+}
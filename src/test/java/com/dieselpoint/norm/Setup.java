@@ -28,7 +28,7 @@ public class Setup {
 		*/
 		
 		/*
-		 * SampleCode doesn't yet work because the sqlite create table syntax is different. Need a new SQL maker.
+		 * Use with db.setSqlMaker(new SqliteMaker()), which handles the sqlite create table syntax.
 		System.setProperty("norm.jdbcUrl", "jdbc:sqlite:sqlitetest.db");
 		System.setProperty("norm.user", "root");
 		System.setProperty("norm.password", "rootpassword");
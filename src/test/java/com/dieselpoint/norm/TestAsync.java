@@ -0,0 +1,86 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestAsync {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("asynctest");
+		db.setMaxPoolSize(2);
+		H2Fixture.createTable(db, Row.class);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		CompletableFuture<?>[] inserts = new CompletableFuture<?>[10];
+		for (int i = 0; i < inserts.length; i++) {
+			inserts[i] = db.sql("insert into testrow (id, name) values (?, ?)", i, "name" + i).executeAsync();
+		}
+		CompletableFuture.allOf(inserts).get();
+
+		CompletableFuture<List<Row>> low = db.where("id < ?", 5).resultsAsync(Row.class);
+		CompletableFuture<Row> last = db.where("id = ?", 9).firstAsync(Row.class);
+		assertEquals("name9", low.thenCombine(last, (rows, row) -> {
+			assertEquals(5, rows.size());
+			return row.name;
+		}).get());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		CountDownLatch prepared = new CountDownLatch(1);
+		CompletableFuture<Throwable> failure = new CompletableFuture<>();
+		db.addQueryListener(new QueryListener() {
+			@Override
+			public void prepared(QueryEvent event, long prepareNanos) {
+				prepared.countDown();
+			}
+
+			@Override
+			public void executed(QueryEvent event, long executeNanos) {
+				failure.complete(null);
+			}
+
+			@Override
+			public void failed(QueryEvent event, Throwable error, long totalNanos) {
+				failure.complete(error);
+			}
+		});
+
+		// runs for hours unless the statement is cancelled
+		CompletableFuture<Long> count = db
+				.sql("select count(*) from system_range(1, 100000) a, system_range(1, 100000) b")
+				.firstAsync(Long.class);
+		assertTrue(prepared.await(10, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		assertTrue(count.cancel(true));
+
+		// the driver reports the cancelled statement; it's not the query refusing to start
+		Throwable error = failure.get(10, TimeUnit.SECONDS);
+		assertNotNull("the statement ran to the end", error);
+		assertTrue(error.toString(), error instanceof SQLException);
+	}
+
+}
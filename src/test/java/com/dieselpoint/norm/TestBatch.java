@@ -0,0 +1,200 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+public class TestBatch {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("batchtest");
+		H2Fixture.createTable(db, Row.class);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testBatch() {
+		List<Row> rows = H2Fixture.rows(250, 250);
+
+		assertEquals(250, new Query(db).batchSize(100).insertAll(rows).getRowsAffected());
+		assertEquals(250L, (long) db.sql("select count(*) from testrow").first(Long.class));
+
+		for (Row row : rows) {
+			row.name = "updated";
+		}
+		assertEquals(250, db.updateAll(rows).getRowsAffected());
+		assertEquals(250L, (long) db.sql("select count(*) from testrow where name='updated'").first(Long.class));
+
+		assertEquals(100, db.deleteAll(rows.subList(0, 100)).getRowsAffected());
+		assertEquals(150L, (long) db.sql("select count(*) from testrow").first(Long.class));
+	}
+
+	@Test(expected = DbException.class)
+	public void testUpdateMissingRow() {
+		db.updateAll(Collections.singletonList(H2Fixture.row(1, "missing")));
+	}
+
+	@Test
+	public void testOverriddenArgs() {
+		// a maker that overrides getInsertArgs() alone must still have it used
+		db.setSqlMaker(new StandardSqlMaker() {
+			@Override
+			public Object[] getInsertArgs(Query query, Object row) {
+				Object[] args = super.getInsertArgs(query, row);
+				args[1] = ((String) args[1]).toUpperCase();
+				return args;
+			}
+		});
+
+		List<Row> rows = H2Fixture.rows(3, 3);
+		db.insert(rows.get(0));
+		db.insertAll(rows.subList(1, 3));
+		assertEquals(3L, (long) db.sql("select count(*) from testrow where name like 'NAME%'").first(Long.class));
+	}
+
+	@Test
+	public void testClassesInOneTransaction() {
+		// rows of two classes go in two batches; a failure in the second must undo the first
+		List<Row> rows = H2Fixture.rows(3, 3);
+		OtherRow other = new OtherRow();
+		other.id = 1;
+		other.name = "duplicate";
+		rows.add(other);
+		try {
+			db.insertAll(rows);
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+		assertEquals(0L, (long) db.sql("select count(*) from testrow").first(Long.class));
+	}
+
+	@Test
+	public void testDefaultMultiRowBinding() {
+		// the multi-row sql comes from the maker, the binding from the SqlMaker defaults
+		db.setSqlMaker(new MultiRowMaker());
+
+		List<Row> rows = H2Fixture.rows(5, 5);
+		assertEquals(5, db.insertAll(rows).getRowsAffected());
+		assertEquals("name3", db.where("id=?", 3).first(Row.class).name);
+
+		for (Row row : rows) {
+			row.name = "upserted";
+		}
+		db.upsertAll(rows);
+		assertEquals(5L, (long) db.sql("select count(*) from testrow where name='upserted'").first(Long.class));
+	}
+
+	@Table(name = H2Fixture.TABLE)
+	public static class OtherRow extends Row {
+	}
+
+	/**
+	 * Does multi-row statements but leaves the binding of them to SqlMaker.
+	 */
+	static class MultiRowMaker implements SqlMaker {
+
+		private final H2Maker maker = new H2Maker();
+
+		@Override
+		public int getMultiRowLimit(Class<?> rowClass) {
+			return maker.getMultiRowLimit(rowClass);
+		}
+
+		@Override
+		public String getMultiRowInsertSql(Query query, Object row, int rowCount) {
+			return maker.getMultiRowInsertSql(query, row, rowCount);
+		}
+
+		@Override
+		public String getMultiRowUpsertSql(Query query, Object row, int rowCount) {
+			return maker.getMultiRowUpsertSql(query, row, rowCount);
+		}
+
+		@Override
+		public String getInsertSql(Query query, Object row) {
+			return maker.getInsertSql(query, row);
+		}
+
+		@Override
+		public Object[] getInsertArgs(Query query, Object row) {
+			return maker.getInsertArgs(query, row);
+		}
+
+		@Override
+		public String getUpdateSql(Query query, Object row) {
+			return maker.getUpdateSql(query, row);
+		}
+
+		@Override
+		public Object[] getUpdateArgs(Query query, Object row) {
+			return maker.getUpdateArgs(query, row);
+		}
+
+		@Override
+		public String getDeleteSql(Query query) {
+			return maker.getDeleteSql(query);
+		}
+
+		@Override
+		public String getDeleteSql(Query query, Object row) {
+			return maker.getDeleteSql(query, row);
+		}
+
+		@Override
+		public Object[] getDeleteArgs(Query query, Object row) {
+			return maker.getDeleteArgs(query, row);
+		}
+
+		@Override
+		public String getUpsertSql(Query query, Object row) {
+			return maker.getUpsertSql(query, row);
+		}
+
+		@Override
+		public Object[] getUpsertArgs(Query query, Object row) {
+			return maker.getUpsertArgs(query, row);
+		}
+
+		@Override
+		public String getSelectSql(Query query, Class<?> rowClass) {
+			return maker.getSelectSql(query, rowClass);
+		}
+
+		@Override
+		public String getCreateTableSql(Class<?> clazz) {
+			return maker.getCreateTableSql(clazz);
+		}
+
+		@Override
+		public PojoInfo getPojoInfo(Class<?> rowClass) {
+			return maker.getPojoInfo(rowClass);
+		}
+
+		@Override
+		public Object convertValue(Object value, String columnTypeName) {
+			return maker.convertValue(value, columnTypeName);
+		}
+	}
+}
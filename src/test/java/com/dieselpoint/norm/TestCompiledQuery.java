@@ -0,0 +1,77 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestCompiledQuery {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("compiledtest");
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(20, 4));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testCompile() {
+		CompiledQuery<Row> byName = db.where("name=?").and("id<?").orderBy("id").compile(Row.class);
+		assertEquals("select `id`,`name` from testrow where name=? and id<? order by id", byName.getSql());
+
+		assertEquals(3, byName.results("name1", 12).size());
+		assertEquals(5, byName.results("name2", 100).size());
+		assertEquals(3, byName.first("name3", 100).id);
+
+		CompiledQuery<Row> delete = db.compile(Row.class, "delete from testrow where name=?");
+		assertEquals(5, delete.execute("name0"));
+	}
+
+	@Test
+	public void testInList() {
+		CompiledQuery<Row> byIds = db.where("id in (?) and name <> ? and id not in (?)").orderBy("id")
+				.compile(Row.class);
+		List<Row> rows = byIds.results(Arrays.asList(5, 6, 7), "name3", new long[] { 5 });
+		assertEquals(1, rows.size());
+		assertEquals(6, rows.get(0).id);
+
+		assertEquals(5, byIds.results(Arrays.asList(1, 2, 3, 4, 5), "name9", Arrays.asList(20)).size());
+		assertEquals(0, byIds.results(new ArrayList<Long>(), "name0", Arrays.asList(1)).size());
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		CompiledQuery<Row> byName = db.compile(Row.class, "select * from testrow where name=?");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				String name = "name" + (i % 4);
+				futures.add(executor.submit(() -> byName.results(name).size()));
+			}
+			for (Future<Integer> future : futures) {
+				assertEquals(Integer.valueOf(5), future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
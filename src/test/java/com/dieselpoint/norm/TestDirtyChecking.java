@@ -0,0 +1,85 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDirtyChecking {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("dirtytest");
+		db.setDirtyChecking(true);
+		H2Fixture.createTable(db, Row.class);
+		Row row = new Row();
+		row.id = 1;
+		row.name = "one";
+		row.total = 10;
+		db.insert(row);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testPartialUpdate() {
+		Row row = db.where("id=?", 1).first(Row.class);
+
+		Query query = db.update(row);
+		assertEquals(0, query.getRowsAffected());
+		assertEquals(null, query.getSql());
+
+		row.total = 11;
+		query = db.update(row);
+		assertEquals(1, query.getRowsAffected());
+		assertEquals("update dirtytest set total=? where id=?", query.getSql());
+
+		// a change made behind norm's back is not overwritten by the next update
+		db.sql("update dirtytest set name=? where id=?", "other", 1).execute();
+		row.total = 12;
+		db.update(row);
+		Row saved = db.findById(Row.class, 1);
+		assertEquals("other", saved.name);
+		assertEquals(12, saved.total);
+	}
+
+	@Test
+	public void testTransaction() {
+		Row row = db.where("id=?", 1).first(Row.class);
+		row.total = 11;
+		Transaction trans = db.startTransaction();
+		db.transaction(trans).update(row);
+		trans.rollback();
+		assertEquals(10, db.findById(Row.class, 1).total);
+
+		// the rolled back values must not count as saved
+		Query query = db.update(row);
+		assertEquals(1, query.getRowsAffected());
+		assertEquals(11, db.findById(Row.class, 1).total);
+
+		row.total = 12;
+		trans = db.startTransaction();
+		db.transaction(trans).update(row);
+		trans.commit();
+		assertEquals(0, db.update(row).getRowsAffected());
+		assertEquals(12, db.findById(Row.class, 1).total);
+	}
+
+	@Table(name = "dirtytest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+		public int total;
+	}
+
+}
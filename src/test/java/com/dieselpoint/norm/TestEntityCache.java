@@ -0,0 +1,79 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestEntityCache {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("entitycachetest");
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(10, 10));
+		db.cacheEntities(Row.class, 5, Duration.ofMinutes(10));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testFindById() {
+		assertEquals("name1", db.findById(Row.class, 1).name);
+		Row row = db.findById(Row.class, 1L);
+		row.name = "not saved";
+		assertEquals("name1", db.findById(Row.class, 1).name);
+		assertNull(db.findById(Row.class, 100));
+
+		CacheStats stats = db.getEntityCache().getStats(Row.class);
+		assertEquals(2, stats.getHits());
+		assertEquals(2, stats.getMisses());
+
+		for (int i = 2; i < 10; i++) {
+			db.findById(Row.class, i);
+		}
+		stats = db.getEntityCache().getStats(Row.class);
+		assertEquals(5, stats.getSize());
+		assertEquals(4, stats.getEvictions());
+	}
+
+	@Test
+	public void testInvalidation() {
+		Row row = db.findById(Row.class, 1);
+		row.name = "updated";
+		db.update(row);
+		assertEquals("updated", db.findById(Row.class, 1).name);
+
+		db.delete(row);
+		assertNull(db.findById(Row.class, 1));
+	}
+
+	@Test
+	public void testTransaction() {
+		Row row = db.findById(Row.class, 2);
+		row.name = "rolled back";
+		Transaction trans = db.startTransaction();
+		db.transaction(trans).update(row);
+		trans.rollback();
+		assertEquals("name2", db.findById(Row.class, 2).name);
+
+		row.name = "committed";
+		trans = db.startTransaction();
+		db.transaction(trans).update(row);
+		assertEquals("name2", db.findById(Row.class, 2).name);
+		trans.commit();
+		assertEquals("committed", db.findById(Row.class, 2).name);
+	}
+
+}
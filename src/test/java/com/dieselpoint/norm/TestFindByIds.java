@@ -0,0 +1,79 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+
+public class TestFindByIds {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("findbyidstest");
+		db.setSqlMaker(new H2Maker());
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(2000, 2000));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testInList() {
+		Map<Object, Row> rows = db.findByIds(Row.class, Arrays.asList(7, 3, 5000, 3, 11));
+		assertEquals(Arrays.asList(7, 3, 11), new ArrayList<>(rows.keySet()));
+		assertEquals("name3", rows.get(3).name);
+		assertFalse(rows.containsKey(5000));
+	}
+
+	@Test
+	public void testTempTable() {
+		db.setTempTableThreshold(100);
+		List<Long> ids = new ArrayList<>();
+		for (long i = 1999; i >= 0; i -= 2) {
+			ids.add(i);
+		}
+		Map<Object, Row> rows = db.findByIds(Row.class, ids);
+		assertEquals(1000, rows.size());
+		assertEquals(1999, rows.values().iterator().next().id);
+
+		// the table is reused
+		assertEquals(1000, db.findByIds(Row.class, ids).size());
+	}
+
+	@Test
+	public void testWhereIn() {
+		List<Row> rows = db.where("id in (?) and name <> ?", Arrays.asList(5, 6, 7), "name6").orderBy("id")
+				.results(Row.class);
+		assertEquals(2, rows.size());
+		assertEquals(7, rows.get(1).id);
+		assertEquals(3, db.where("id in (?)", new long[] { 1, 2, 3 }).count(Row.class));
+		assertEquals(0, db.where("id in (?)", new ArrayList<Long>()).count(Row.class));
+
+		long total = new Query(db).count(Row.class);
+		assertEquals(total - 3, db.where("id not in (?)", Arrays.asList(1, 2, 3)).count(Row.class));
+		try {
+			db.where("id NOT IN (?)", new ArrayList<Long>()).count(Row.class);
+			fail("An empty not in list should be rejected");
+		} catch (DbException e) {
+			assertTrue(e.getMessage().contains("not in"));
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestFirst {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("firsttest");
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(10, 3));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testFirst() {
+		Query query = db.where("name=?", "name1").orderBy("id");
+		assertEquals(1, query.first(Row.class).id);
+		// first() doesn't change the query
+		assertEquals(3, query.results(Row.class).size());
+	}
+
+	@Test
+	public void testOne() {
+		assertEquals(4, db.where("id=?", 4).one(Row.class).id);
+		assertNull(db.where("id=?", 40).one(Row.class));
+		try {
+			db.where("name=?", "name1").one(Row.class);
+			throw new AssertionError("expected an exception");
+		} catch (DbException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testExistsAndCount() {
+		assertTrue(db.where("name=?", "name2").exists(Row.class));
+		assertFalse(db.table("testrow").where("name=?", "none").exists());
+		assertEquals(4, db.where("name=?", "name0").count(Row.class));
+		assertEquals(10, db.table("testrow").count());
+		assertEquals(3, db.sql("select * from testrow where id < ?", 3).count());
+	}
+
+	@Test
+	public void testCountWithLimit() {
+		assertEquals(2, db.where("name=?", "name0").limit(2).count(Row.class));
+		assertEquals(1, db.table("testrow").orderBy("id").limit(5).offset(9).count());
+		assertFalse(db.where("name=?", "name0").offset(4).exists(Row.class));
+	}
+
+}
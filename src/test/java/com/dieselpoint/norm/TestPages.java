@@ -0,0 +1,49 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestPages {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("pagestest");
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(95, 2));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testPages() {
+		checkPages(false);
+		checkPages(true);
+	}
+
+	private void checkPages(boolean prefetch) {
+		List<Integer> sizes = new ArrayList<>();
+		long expected = 1;
+		for (List<Row> page : db.where("name=?", "name1").pages(Row.class, 10).prefetch(prefetch)) {
+			sizes.add(page.size());
+			for (Row row : page) {
+				assertEquals(expected, row.id);
+				expected += 2;
+			}
+		}
+		assertEquals("[10, 10, 10, 10, 7]", sizes.toString());
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelScan {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("scantest");
+		db.setMaxPoolSize(4);
+		H2Fixture.createTable(db, Row.class);
+		List<Row> rows = new ArrayList<>();
+		for (int i = 1; i <= 1000; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.amount = i % 10;
+			rows.add(row);
+		}
+		db.insertAll(rows);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testUnordered() {
+		AtomicLong total = new AtomicLong();
+		db.where("amount > ?", 4).parallelScan(Row.class, 8, row -> total.addAndGet(row.amount));
+		assertEquals(100 * (5 + 6 + 7 + 8 + 9), total.get());
+	}
+
+	@Test
+	public void testOrdered() {
+		List<Long> ids = new ArrayList<>();
+		db.table("scantest").parallelScan(Row.class, 3).splitPoints(300, 600).ordered(true).maxConcurrency(2)
+				.forEach(row -> ids.add(row.id));
+		assertEquals(1000, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i + 1, ids.get(i).longValue());
+		}
+	}
+
+	@Table(name = "scantest")
+	public static class Row {
+		@Id
+		public long id;
+		public int amount;
+	}
+
+}
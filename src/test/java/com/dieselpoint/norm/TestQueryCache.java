@@ -0,0 +1,80 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestQueryCache {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("querycachetest");
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(10, 2));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	private void insert(int id) {
+		db.insert(H2Fixture.row(id, "name" + (id % 2)));
+	}
+
+	private int count(String name) {
+		return db.where("name=?", name).cached(Duration.ofMinutes(10)).results(Row.class).size();
+	}
+
+	@Test
+	public void testCached() {
+		assertEquals(5, count("name0"));
+		assertEquals(5, count("name0"));
+		assertEquals(5, count("name1"));
+
+		CacheStats stats = db.getQueryCache().getStats();
+		assertEquals(1, stats.getHits());
+		assertEquals(2, stats.getMisses());
+		assertEquals(2, stats.getSize());
+
+		// a write through norm drops entries for the table
+		insert(10);
+		assertEquals(6, count("name0"));
+
+		// straight sql with no table drops everything
+		db.sql("delete from testrow where id=?", 10).execute();
+		assertEquals(5, count("name0"));
+		assertEquals(4, db.getQueryCache().getStats().getMisses());
+	}
+
+	@Test
+	public void testTransaction() {
+		assertEquals(5, count("name1"));
+		Transaction trans = db.startTransaction();
+		db.transaction(trans).insert(H2Fixture.row(11, "name1"));
+		assertEquals(5, count("name1"));
+		trans.commit();
+		assertEquals(6, count("name1"));
+	}
+
+	@Test
+	public void testFirstIsNotCachedAsResults() {
+		Duration ttl = Duration.ofMinutes(10);
+		Query query = db.sql("select * from testrow where name=? order by id", "name0").cached(ttl);
+		assertEquals(0, query.first(Row.class).id);
+		assertEquals(5, query.results(Row.class).size());
+
+		Query limited = db.where("name=?", "name1").orderBy("id").limit(3).cached(ttl);
+		assertEquals(1, limited.first(Row.class).id);
+		assertEquals(3, limited.results(Row.class).size());
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStatementCache {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("cachetest");
+		H2Fixture.createTable(db, Row.class);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testReuse() {
+		Transaction trans = db.startTransaction();
+
+		Row row = new Row();
+		row.id = 1;
+		row.total = 0;
+		db.transaction(trans).insert(row);
+
+		for (int i = 0; i < 100; i++) {
+			row.total = i;
+			db.transaction(trans).update(row);
+		}
+		trans.commit();
+
+		// one miss each for the insert and the update
+		assertEquals(2, trans.getStatementCacheMisses());
+		assertEquals(99, trans.getStatementCacheHits());
+		assertEquals(99, (int) db.sql("select total from cachetest where id=1").first(Integer.class));
+	}
+
+	@Table(name = "cachetest")
+	public static class Row {
+		@Id
+		public long id;
+		public int total;
+	}
+}
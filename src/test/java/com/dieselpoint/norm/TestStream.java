@@ -0,0 +1,176 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestStream {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("streamtest");
+		H2Fixture.createTable(db, Row.class);
+		db.insertAll(H2Fixture.rows(100, 100));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testStream() {
+		try (Stream<Row> stream = db.orderBy("id").fetchSize(10).stream(Row.class)) {
+			List<String> names = stream.filter(row -> row.id % 10 == 0).map(row -> row.name)
+					.collect(Collectors.toList());
+			assertEquals(10, names.size());
+			assertEquals("name90", names.get(9));
+		}
+	}
+
+	@Test
+	public void testForEach() {
+		List<Row> rows = new ArrayList<>();
+		db.where("id < ?", 5).forEach(Row.class, rows::add);
+		assertEquals(5, rows.size());
+	}
+
+	@Test
+	public void testPublish() throws Exception {
+		List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		db.orderBy("id").publish(Row.class).subscribe(new Flow.Subscriber<Row>() {
+			private Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(2);
+			}
+
+			@Override
+			public void onNext(Row row) {
+				ids.add(row.id);
+				if (ids.size() == 5) {
+					subscription.cancel();
+					done.complete(null);
+				} else if (ids.size() % 2 == 0) {
+					subscription.request(2);
+				}
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				done.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				done.complete(null);
+			}
+		});
+		done.get(10, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), ids);
+	}
+
+	@Test
+	public void testPublishConcurrently() throws Exception {
+		Flow.Publisher<Row> publisher = db.where("id >= ?", 0).orderBy("id").publish(Row.class);
+		List<CompletableFuture<Integer>> counts = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			CompletableFuture<Integer> count = new CompletableFuture<>();
+			counts.add(count);
+			publisher.subscribe(new Flow.Subscriber<Row>() {
+				private int rows;
+
+				@Override
+				public void onSubscribe(Flow.Subscription subscription) {
+					subscription.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public void onNext(Row row) {
+					rows++;
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					count.completeExceptionally(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					count.complete(rows);
+				}
+			});
+		}
+		for (CompletableFuture<Integer> count : counts) {
+			assertEquals(100, (int) count.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(db.getMaxPoolSize(), db.getInFlight().availablePermits());
+	}
+
+	@Test
+	public void testPublishersAndAsyncAtPoolLimit() throws Exception {
+		// two open cursors take every permit; the async queries must wait without tying up the executor
+		Database small = H2Fixture.open("streamtest");
+		small.setMaxPoolSize(2);
+		try {
+			List<Flow.Subscription> subscriptions = new ArrayList<>();
+			CountDownLatch opened = new CountDownLatch(2);
+			for (int i = 0; i < 2; i++) {
+				small.orderBy("id").publish(Row.class).subscribe(new Flow.Subscriber<Row>() {
+					@Override
+					public void onSubscribe(Flow.Subscription subscription) {
+						synchronized (subscriptions) {
+							subscriptions.add(subscription);
+						}
+						subscription.request(1);
+					}
+
+					@Override
+					public void onNext(Row row) {
+						opened.countDown();
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+					}
+
+					@Override
+					public void onComplete() {
+					}
+				});
+			}
+			assertTrue(opened.await(10, TimeUnit.SECONDS));
+			assertEquals(0, small.getInFlight().availablePermits());
+
+			CompletableFuture<List<Row>> first = small.where("id < ?", 5).resultsAsync(Row.class);
+			CompletableFuture<List<Row>> second = small.where("id < ?", 7).resultsAsync(Row.class);
+			for (Flow.Subscription subscription : subscriptions) {
+				subscription.cancel();
+			}
+			assertEquals(5, first.get(10, TimeUnit.SECONDS).size());
+			assertEquals(7, second.get(10, TimeUnit.SECONDS).size());
+		} finally {
+			small.close();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.dieselpoint.norm;
+
+import static com.dieselpoint.norm.H2Fixture.row;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+
+public class TestUnitOfWork {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = H2Fixture.open("unitofworktest");
+		H2Fixture.createTable(db, Row.class);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testFlushAtCommit() {
+		Transaction trans = db.startUnitOfWork();
+		for (int i = 0; i < 10; i++) {
+			db.transaction(trans).insert(row(i, "name" + i));
+		}
+		Row gone = row(10, "gone");
+		db.transaction(trans).insert(gone);
+		db.transaction(trans).delete(gone);
+		assertEquals(10, trans.getPendingWriteCount());
+		assertEquals(0, db.sql("select * from testrow").results(Row.class).size());
+		trans.commit();
+
+		assertEquals(10, db.sql("select * from testrow").results(Row.class).size());
+		assertNull(db.findById(Row.class, 10));
+	}
+
+	@Test
+	public void testIdentityMap() {
+		db.insert(row(1, "one"));
+
+		Transaction trans = db.startUnitOfWork();
+		Row first = db.transaction(trans).where("id=?", 1).first(Row.class);
+		first.name = "changed";
+		db.transaction(trans).update(first);
+
+		// the query flushes the update first, and returns the same instance
+		Row second = db.transaction(trans).where("name=?", "changed").first(Row.class);
+		assertSame(first, second);
+		trans.commit();
+
+		assertEquals("changed", db.findById(Row.class, 1).name);
+	}
+
+	@Test
+	public void testDeleteThenInsertSameKey() {
+		db.insert(row(1, "old"));
+
+		Transaction trans = db.startUnitOfWork();
+		Row old = db.transaction(trans).where("id=?", 1).first(Row.class);
+		db.transaction(trans).delete(old);
+		db.transaction(trans).insert(row(1, "new"));
+		trans.commit();
+
+		assertEquals("new", db.findById(Row.class, 1).name);
+	}
+
+	@Test
+	public void testRollback() {
+		Transaction trans = db.startUnitOfWork();
+		db.transaction(trans).insert(row(1, "one"));
+		trans.flush();
+		trans.rollback();
+		assertNull(db.findById(Row.class, 1));
+	}
+
+}
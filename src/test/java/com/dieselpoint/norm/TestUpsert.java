@@ -0,0 +1,63 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.H2Fixture.Row;
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.SqliteMaker;
+
+public class TestUpsert {
+
+	@Test
+	public void testH2() {
+		test(H2Fixture.open("upserttest"), new H2Maker());
+	}
+
+	@Test
+	public void testSqlite() {
+		Database db = new Database();
+		db.setJdbcUrl("jdbc:sqlite::memory:");
+		test(db, new SqliteMaker());
+	}
+
+	private void test(Database db, SqlMaker sqlMaker) {
+		db.setSqlMaker(sqlMaker);
+		// a sqlite memory database lives only as long as its connection
+		db.setMaxPoolSize(1);
+
+		try {
+			H2Fixture.createTable(db, Row.class);
+
+			Row row = H2Fixture.row(1, "bob");
+			db.upsert(row);
+
+			row.name = "Fred";
+			db.upsert(row);
+
+			List<Row> rows = db.results(Row.class);
+			assertEquals(1, rows.size());
+			assertEquals("Fred", rows.get(0).name);
+
+			List<Row> more = H2Fixture.rows(10, 10);
+			db.upsertAll(more);
+
+			rows = db.orderBy("id").results(Row.class);
+			assertEquals(10, rows.size());
+			assertEquals("name1", rows.get(1).name);
+
+			// the same key twice in one list; the last one wins
+			more.add(H2Fixture.row(20, "first"));
+			more.add(H2Fixture.row(20, "last"));
+			db.upsertAll(more);
+			assertEquals("last", db.where("id=?", 20).first(Row.class).name);
+
+		} finally {
+			db.close();
+		}
+	}
+}
@@ -31,7 +31,7 @@ public class MySqlMakerTest {
 
         String updateSql = sut.getUpsertSql(query, testTable);
 
-        assertEquals(updateSql, "insert into testTable (name) values (?) on duplicate key update name=?");
+        assertEquals(updateSql, "insert into testtable (`id`,`name`) values (?,?) on duplicate key update `id`=?,`name`=?");
     }
 
     @Test
@@ -44,8 +44,8 @@ public class MySqlMakerTest {
 
         Object[] upsertArgs = sut.getUpsertArgs(query, testTable);
 
-        assertEquals(upsertArgs.length, 2);
-        assertArrayEquals(upsertArgs, new Object[] { "test", "test" });
+        assertEquals(upsertArgs.length, 4);
+        assertArrayEquals(upsertArgs, new Object[] { 2, "test", 2, "test" });
     }
 
     @Test
@@ -57,6 +57,31 @@ public class MySqlMakerTest {
         StandardPojoInfo pojoInfo = sut.getPojoInfo(StandardSqlMakerTest.TestTable.class);
         sut.makeUpsertSql(pojoInfo);
 
-        assertEquals(pojoInfo.upsertSql, "insert into testTable (name) values (?) on duplicate key update name=?");
+        assertEquals(pojoInfo.upsertSql, "insert into testtable (`id`,`name`) values (?,?) on duplicate key update `id`=?,`name`=?");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getMultiRowInsertSql() {
+        Query query = new Query(db);
+
+        String sql = sut.getMultiRowInsertSql(query, new StandardSqlMakerTest.TestTable(), 3);
+
+        assertEquals("insert into testtable (`id`,`name`) values (?,?),(?,?),(?,?)", sql);
+    }
+
+    @Test
+    public void getMultiRowUpsertSql() {
+        Query query = new Query(db);
+
+        String sql = sut.getMultiRowUpsertSql(query, new StandardSqlMakerTest.TestTable(), 2);
+
+        assertEquals("insert into testtable (`id`,`name`) values (?,?),(?,?)"
+                + " on duplicate key update `id`=values(`id`),`name`=values(`name`)", sql);
+    }
+
+    @Test
+    public void getMultiRowLimit() {
+        assertEquals(65535 / 2, sut.getMultiRowLimit(StandardSqlMakerTest.TestTable.class));
+        assertEquals(0, new StandardSqlMaker().getMultiRowLimit(StandardSqlMakerTest.TestTable.class));
+    }
+}
@@ -0,0 +1,58 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Query;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PostgresMakerTest {
+    PostgresMaker sut;
+    Database db;
+
+    @Before
+    public void setup() {
+        sut = new PostgresMaker();
+        db = mock(Database.class);
+
+        when(db.getSqlMaker()).thenReturn(sut);
+    }
+
+    @Test
+    public void getUpsertSql() {
+        String upsertSql = sut.getUpsertSql(new Query(db), new UpsertTable());
+
+        assertEquals("insert into upserttable (id,name) values (?,?) on conflict (id) do update set name=excluded.name", upsertSql);
+    }
+
+    @Test
+    public void getUpsertArgs() {
+        UpsertTable row = new UpsertTable();
+        row.id = 2;
+        row.name = "test";
+
+        Object[] upsertArgs = sut.getUpsertArgs(new Query(db), row);
+
+        assertArrayEquals(new Object[] { 2, "test" }, upsertArgs);
+    }
+
+    @Test
+    public void getMultiRowUpsertSql() {
+        String upsertSql = sut.getMultiRowUpsertSql(new Query(db), new UpsertTable(), 2);
+
+        assertEquals("insert into upserttable (id,name) values (?,?),(?,?) on conflict (id) do update set name=excluded.name", upsertSql);
+    }
+
+    @Table(name = "upsertTable")
+    static class UpsertTable {
+        @Id
+        public int id;
+        public String name;
+    }
+}
@@ -0,0 +1,36 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.DbException;
+
+public class PropertyAccessorsTest {
+
+	@Test
+	public void testPutValue() {
+		StandardPojoInfo pojoInfo = new StandardPojoInfo(Row.class);
+		Row row = new Row();
+
+		pojoInfo.putValue(row, "id", 5L);
+		assertEquals(5L, row.id);
+
+		// widened by reflection, the handle won't take an Integer for a long
+		pojoInfo.putValue(row, "id", 7);
+		assertEquals(7L, row.id);
+
+		pojoInfo.putValue(row, "name", "bob");
+		assertEquals("bob", row.name);
+	}
+
+	@Test(expected = DbException.class)
+	public void testWrongType() {
+		new StandardPojoInfo(Row.class).putValue(new Row(), "id", "not a number");
+	}
+
+	public static class Row {
+		public long id;
+		public String name;
+	}
+}
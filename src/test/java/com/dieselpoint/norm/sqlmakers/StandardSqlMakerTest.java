@@ -38,7 +38,7 @@ public class StandardSqlMakerTest {
 
         String insertSql = sut.getInsertSql(query, testTable);
 
-        assertEquals(insertSql, "insert into testTable (name) values (?)");
+        assertEquals(insertSql, "insert into testtable (`name`) values (?)");
     }
 
     @Test
@@ -49,7 +49,7 @@ public class StandardSqlMakerTest {
 
         String updateSql = sut.getUpdateSql(query, testTable);
 
-        assertEquals(updateSql, "update testTable set name=? where id=?");
+        assertEquals(updateSql, "update testtable set name=? where id=?");
     }
 
     @Test
@@ -58,14 +58,14 @@ public class StandardSqlMakerTest {
 
         String selectSql = sut.getSelectSql(query, TestTable.class);
 
-        assertEquals(selectSql, "select id,name from testTable");
+        assertEquals(selectSql, "select `id`,`name` from testtable");
     }
 
     @Test
     public void getCreateTableSql() {
         String createTableSql = sut.getCreateTableSql(TestTable.class);
 
-        assertEquals(createTableSql, "create table testTable (id integer auto_increment,name varchar(255), primary key (id))");
+        assertEquals(createTableSql, "create table if not exists testtable (id integer auto_increment,name varchar(255), primary key (id))");
     }
 
     @Test
@@ -74,7 +74,7 @@ public class StandardSqlMakerTest {
 
         String deleteSql = sut.getDeleteSql(new Query(db), testTable);
 
-        assertEquals(deleteSql, "delete from testTable where id=?");
+        assertEquals(deleteSql, "delete from testtable where id=?");
     }
 
     @Test
@@ -129,12 +129,15 @@ public class StandardSqlMakerTest {
 
     @Table(name = "testTable")
     static class TestTable {
-        private int id;
-        private String name;
-
+        // norm reads annotations on fields, not getters
         @Id
         @GeneratedValue
         @Column(name = "id")
+        private int id;
+
+        @Column(name = "name")
+        private String name;
+
         public int getId() {
             return id;
         }
@@ -143,7 +146,6 @@ public class StandardSqlMakerTest {
             this.id = id;
         }
 
-        @Column(name = "name")
         public String getName() {
             return name;
         }